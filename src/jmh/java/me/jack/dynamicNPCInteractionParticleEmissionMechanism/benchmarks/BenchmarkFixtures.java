@@ -0,0 +1,98 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleSink;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Server-free stand-ins shared by the benchmarks.
+ * World and Player are proxies because the engine only calls them once per tick or viewer;
+ * everything called per particle goes through {@link RecordingSink} so no boxing skews the results.
+ */
+final class BenchmarkFixtures {
+    static final int DURATION = 100;
+
+    private BenchmarkFixtures() {
+    }
+
+    static NPCData npc(ParticleShape shape, int density) {
+        return npc(shape, density, new Location(null, 0, 64, 0));
+    }
+
+    static NPCData npc(ParticleShape shape, int density, Location location) {
+        return new NPCData(UUID.randomUUID(), location, EffectProfile.of(Particle.FLAME, shape,
+                TargetMode.FULL_NPC, density, 0.0, DURATION, 1.5, 2.0, 3, 1.0));
+    }
+
+    /**
+     * A world holding the given number of players standing in a line along the x axis
+     */
+    static World world(int players, double spacing) {
+        List<Player> online = new ArrayList<>(players);
+        World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getPlayers" -> Collections.unmodifiableList(online);
+                    case "getName" -> "benchmark";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchmarkWorld";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        for (int i = 0; i < players; i++) {
+            online.add(player(world, i * spacing, 64, 0));
+        }
+        return world;
+    }
+
+    private static Player player(World world, double x, double y, double z) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLocation" -> {
+                        Location location = args != null && args.length == 1 && args[0] != null
+                                ? (Location) args[0]
+                                : new Location(world, 0, 0, 0);
+                        location.setWorld(world);
+                        location.setX(x);
+                        location.setY(y);
+                        location.setZ(z);
+                        yield location;
+                    }
+                    case "getWorld" -> world;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BenchmarkPlayer";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Counts every particle the engine emits and folds the coordinates into a checksum
+     * so the JIT cannot drop the emission loop
+     */
+    static final class RecordingSink implements ParticleSink {
+        long particles;
+        long calls;
+        double checksum;
+
+        @Override
+        public void spawn(Player viewer, Particle particle, double x, double y, double z, int count,
+                          double spread, double speed) {
+            calls++;
+            particles += count;
+            checksum += x + y + z;
+        }
+    }
+}
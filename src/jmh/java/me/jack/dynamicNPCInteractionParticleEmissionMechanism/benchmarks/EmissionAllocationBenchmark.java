@@ -0,0 +1,190 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.EffectEngine;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.FrameCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.GeometryCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleBudget;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ViewerResolver;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.DirectionPool;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeRegistry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Steady-state allocation per emitted particle, which must be zero.
+ * Two engines run the same mix of shapes at a low and a high density; the difference in bytes
+ * allocated by the emitting thread over the same number of ticks, divided by the difference in
+ * particles, leaves out the per-tick and per-viewer work (including the proxy fixtures) and keeps
+ * only what scales with the particle count. The trial fails if that is a byte or more, since any
+ * object allocated per particle costs at least 16. Frames are built on the emitting thread so
+ * its counter sees all of the work.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.include=EmissionAllocationBenchmark};
+ * it is not part of {@code mvn test}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmissionAllocationBenchmark {
+    private static final Logger LOGGER = Logger.getLogger("EmissionAllocationBenchmark");
+    private static final double[] VIEW_DISTANCES = {16.0, 32.0, 64.0};
+    private static final double[] DENSITY_FACTORS = {1.0, 0.5, 0.25};
+    private static final int BASELINE_DENSITY = 10;
+    private static final int CHECK_TICKS = 2000;
+
+    @Param({"1000", "10000"})
+    public int density;
+
+    @Param({"20"})
+    public int effects;
+
+    @Param({"8"})
+    public int viewers;
+
+    /**
+     * Shared frame cache size in points; 0 builds every frame per effect
+     */
+    @Param({"0", "262144"})
+    public long frameCachePoints;
+
+    private Rig baseline;
+    private Rig measured;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ParticleCounter {
+        public long particles;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            particles = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        baseline = new Rig(BASELINE_DENSITY);
+        measured = new Rig(density);
+        // Fill lazily built frames, caches and viewer sets before anything is counted
+        for (int i = 0; i < BenchmarkFixtures.DURATION * 2; i++) {
+            baseline.step();
+            measured.step();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        try {
+            // Runs after the measurement iterations, so both engines are compiled and warm
+            long[] low = baseline.measure(CHECK_TICKS);
+            long[] high = measured.measure(CHECK_TICKS);
+            long particles = high[1] - low[1];
+            if (particles <= 0) {
+                throw new IllegalStateException("Density " + density + " emitted no more particles than the baseline");
+            }
+            double bytesPerParticle = (double) (high[0] - low[0]) / particles;
+            LOGGER.info(String.format("Allocated %.4f bytes per particle (%d bytes over %d ticks at density %d, %d at %d)",
+                    bytesPerParticle, high[0], CHECK_TICKS, density, low[0], BASELINE_DENSITY));
+            if (bytesPerParticle >= 1.0) {
+                throw new IllegalStateException(String.format(
+                        "Emission allocates %.2f bytes per particle, expected 0", bytesPerParticle));
+            }
+        } finally {
+            baseline.engine.shutdown();
+            measured.engine.shutdown();
+        }
+    }
+
+    @Benchmark
+    public double step(ParticleCounter counter) {
+        long before = measured.sink.particles;
+        measured.step();
+        counter.particles += measured.sink.particles - before;
+        return measured.sink.checksum;
+    }
+
+    /**
+     * One engine with its own effects, sink and caches
+     */
+    private final class Rig {
+        private final EffectEngine engine;
+        private final ActiveEffect[] running;
+        private final BenchmarkFixtures.RecordingSink sink = new BenchmarkFixtures.RecordingSink();
+
+        private Rig(int density) {
+            // Unlimited budget so the whole frame is emitted every tick
+            ParticleBudget budget = new ParticleBudget(Integer.MAX_VALUE, new double[0], new double[0]);
+            FrameCache frameCache = frameCachePoints > 0 ? new FrameCache(frameCachePoints) : null;
+            engine = new EffectEngine(LOGGER,
+                    new ViewerResolver(VIEW_DISTANCES, DENSITY_FACTORS), budget, sink, frameCache, null, null,
+                    0,
+                    effect -> { });
+
+            ShapeRegistry registry = new ShapeRegistry(DirectionPool.create(4096, 1L));
+            GeometryCache geometryCache = new GeometryCache();
+            SplittableRandom seeds = new SplittableRandom(42L);
+            World world = BenchmarkFixtures.world(viewers, 64.0 / viewers);
+            ParticleShape[] shapes = ParticleShape.values();
+
+            running = new ActiveEffect[effects];
+            for (int i = 0; i < effects; i++) {
+                ParticleShape shape = shapes[i % shapes.length];
+                NPCData npcData = BenchmarkFixtures.npc(shape, density);
+                ShapeGenerator generator = registry.get(shape);
+                running[i] = new ActiveEffect(npcData, new Location(world, i, 64, 0), generator,
+                        geometryCache.get(generator, npcData), seeds.split(),
+                        frameCache != null ? frameCache.profile(generator, npcData) : null);
+                engine.add(running[i]);
+            }
+        }
+
+        private void step() {
+            // Keep every effect alive so each tick runs the full set
+            for (ActiveEffect effect : running) {
+                effect.extend();
+            }
+            engine.step(20.0);
+        }
+
+        /**
+         * Step the engine and report the bytes this thread allocated and the particles emitted
+         */
+        private long[] measure(int ticks) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            long particlesBefore = sink.particles;
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < ticks; i++) {
+                step();
+            }
+            long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            return new long[]{bytes, sink.particles - particlesBefore};
+        }
+    }
+}
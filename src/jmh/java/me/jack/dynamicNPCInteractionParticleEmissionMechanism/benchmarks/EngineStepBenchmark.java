@@ -0,0 +1,128 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.EffectEngine;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.FrameCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.GeometryCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleBudget;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ViewerResolver;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.DirectionPool;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeRegistry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Cost of one full engine tick: viewer resolution, frame building, budget thinning and emission,
+ * with a mix of every built-in shape watched by players spread across the distance bands.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineStepBenchmark {
+    private static final double[] VIEW_DISTANCES = {16.0, 32.0, 64.0};
+    private static final double[] DENSITY_FACTORS = {1.0, 0.5, 0.25};
+
+    @Param({"10", "100", "1000", "10000"})
+    public int density;
+
+    @Param({"20"})
+    public int effects;
+
+    @Param({"8"})
+    public int viewers;
+
+    @Param({"0", "2"})
+    public int generationThreads;
+
+    /**
+     * Shared frame cache size in points; 0 builds every frame per effect
+     */
+    @Param({"0", "262144"})
+    public long frameCachePoints;
+
+    private EffectEngine engine;
+    private ActiveEffect[] running;
+    private BenchmarkFixtures.RecordingSink sink;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ParticleCounter {
+        public long particles;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            particles = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sink = new BenchmarkFixtures.RecordingSink();
+        // Unlimited budget so the benchmark measures the full frame rather than the thinned one
+        ParticleBudget budget = new ParticleBudget(Integer.MAX_VALUE, new double[0], new double[0]);
+        FrameCache frameCache = frameCachePoints > 0 ? new FrameCache(frameCachePoints) : null;
+        engine = new EffectEngine(Logger.getLogger("EngineStepBenchmark"),
+                new ViewerResolver(VIEW_DISTANCES, DENSITY_FACTORS), budget, sink, frameCache, null, null,
+                generationThreads,
+                effect -> { });
+
+        ShapeRegistry registry = new ShapeRegistry(DirectionPool.create(4096, 1L));
+        GeometryCache geometryCache = new GeometryCache();
+        SplittableRandom seeds = new SplittableRandom(42L);
+        World world = BenchmarkFixtures.world(viewers, 64.0 / viewers);
+        ParticleShape[] shapes = ParticleShape.values();
+
+        running = new ActiveEffect[effects];
+        for (int i = 0; i < effects; i++) {
+            ParticleShape shape = shapes[i % shapes.length];
+            NPCData npcData = BenchmarkFixtures.npc(shape, density);
+            ShapeGenerator generator = registry.get(shape);
+            running[i] = new ActiveEffect(npcData, new Location(world, i, 64, 0), generator,
+                    geometryCache.get(generator, npcData), seeds.split(),
+                    frameCache != null ? frameCache.profile(generator, npcData) : null);
+            engine.add(running[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public double step(ParticleCounter counter) {
+        // Keep every effect alive so each tick measures a full set of effects
+        for (ActiveEffect effect : running) {
+            effect.extend();
+        }
+
+        long before = sink.particles;
+        engine.step(20.0);
+        counter.particles += sink.particles - before;
+        return sink.checksum;
+    }
+}
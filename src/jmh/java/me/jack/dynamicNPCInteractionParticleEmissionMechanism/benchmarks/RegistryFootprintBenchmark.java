@@ -0,0 +1,100 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Building the NPC registry from loaded rows, and the heap it keeps per NPC. NPCs sharing effect
+ * settings share one interned profile, so only the UUID, the location and one reference are paid
+ * per NPC. The retained size is measured once, after the timed iterations, as the difference in
+ * heap use after a full GC with and without a registry of that size; it is logged rather than
+ * asserted, since it depends on the JVM's object layout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistryFootprintBenchmark {
+    private static final Logger LOGGER = Logger.getLogger("RegistryFootprintBenchmark");
+    private static final ParticleShape[] SHAPES = ParticleShape.values();
+
+    @Param({"100000"})
+    public int npcs;
+
+    /**
+     * Number of distinct effect settings spread over the NPCs
+     */
+    @Param({"1", "8"})
+    public int profiles;
+
+    private World world;
+    private long[] uuids;
+    private double[] coordinates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        world = BenchmarkFixtures.world(0, 1.0);
+        SplittableRandom random = new SplittableRandom(42L);
+        uuids = new long[npcs * 2];
+        coordinates = new double[npcs * 2];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = random.nextLong();
+            coordinates[i] = random.nextDouble(-10_000.0, 10_000.0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long before = usedHeap();
+        NPCData[] registry = build();
+        long after = usedHeap();
+        LOGGER.info(String.format("Registry of %d NPCs with %d profiles retains %d bytes, %.1f per NPC",
+                registry.length, profiles, after - before, (double) (after - before) / registry.length));
+    }
+
+    @Benchmark
+    public NPCData[] build() {
+        NPCData[] registry = new NPCData[npcs];
+        for (int i = 0; i < npcs; i++) {
+            int variant = i % profiles;
+            EffectProfile profile = EffectProfile.of(Particle.FLAME, SHAPES[variant % SHAPES.length],
+                    TargetMode.FULL_NPC, 20 + variant, 0.0, BenchmarkFixtures.DURATION, 1.5, 2.0, 3, 1.0);
+            registry[i] = new NPCData(new UUID(uuids[2 * i], uuids[2 * i + 1]),
+                    new Location(world, coordinates[2 * i], 64, coordinates[2 * i + 1]), profile);
+        }
+        return registry;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
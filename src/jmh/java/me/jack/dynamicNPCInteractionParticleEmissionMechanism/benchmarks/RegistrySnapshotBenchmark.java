@@ -0,0 +1,103 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.RegistrySnapshot;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Writing and reading the registry snapshot used on warm restarts. Loading includes checking
+ * the CRC and building every NPCData, as a warm restart does before the NPCs are cached.
+ * Runs on a temporary file, with world names resolved to a stand-in world.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistrySnapshotBenchmark {
+    private static final Logger LOGGER = Logger.getLogger("RegistrySnapshotBenchmark");
+    private static final long REVISION = 42L;
+    private static final ParticleShape[] SHAPES = ParticleShape.values();
+
+    @Param({"100000"})
+    public int npcs;
+
+    @Param({"4"})
+    public int profiles;
+
+    private Path directory;
+    private Path file;
+    private World world;
+    private List<NPCData> registry;
+    private NPCData[] loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("dnipem-snapshot-bench");
+        file = directory.resolve("registry.snapshot");
+        world = BenchmarkFixtures.world(0, 1.0);
+        SplittableRandom random = new SplittableRandom(42L);
+        registry = new ArrayList<>(npcs);
+        for (int i = 0; i < npcs; i++) {
+            int variant = i % profiles;
+            registry.add(new NPCData(new UUID(random.nextLong(), random.nextLong()),
+                    new Location(world, random.nextDouble(-10_000.0, 10_000.0), 64,
+                            random.nextDouble(-10_000.0, 10_000.0)),
+                    EffectProfile.of(Particle.FLAME, SHAPES[variant % SHAPES.length], TargetMode.FULL_NPC,
+                            20 + variant, 0.0, BenchmarkFixtures.DURATION, 1.5, 2.0, 3, 1.0)));
+        }
+        loaded = new NPCData[npcs];
+        RegistrySnapshot.write(file, REVISION, registry);
+        LOGGER.info("Snapshot of " + npcs + " NPCs is " + Files.size(file) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        int[] index = new int[1];
+        int count = RegistrySnapshot.load(file, REVISION, name -> world, npcData -> loaded[index[0]++] = npcData);
+        if (count != npcs) {
+            throw new IllegalStateException("Snapshot loaded " + count + " of " + npcs + " NPCs");
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        RegistrySnapshot.write(file, REVISION, registry);
+    }
+}
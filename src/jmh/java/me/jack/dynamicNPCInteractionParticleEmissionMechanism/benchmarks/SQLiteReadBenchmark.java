@@ -0,0 +1,129 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.SQLiteManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Latency of SQLite point reads through the read-only connections, on an idle database and
+ * while the write-behind thread commits batches back to back. With WAL the two should be close,
+ * since readers never wait for the writer; wal=false shows the cost of readers waiting for
+ * each batch's lock. Runs against a temporary database file.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class SQLiteReadBenchmark {
+    @Param({"true", "false"})
+    public boolean wal;
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"200"})
+    public int batchSize;
+
+    private Path directory;
+    private SQLiteManager database;
+    private NPCData[] npcs;
+    // Only touched by the writer thread of the group
+    private int writeCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("dnipem-sqlite-benchmark");
+        database = new SQLiteManager(Logger.getLogger("SQLiteReadBenchmark"), directory.resolve("npcs.db").toFile(),
+                batchSize, 0, new SQLiteManager.Settings(wal, "NORMAL", 2, 8192, 64));
+        database.initialize().join();
+
+        World world = BenchmarkFixtures.world(0, 0);
+        ParticleShape[] shapes = ParticleShape.values();
+        npcs = new NPCData[rows];
+        CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < rows; i++) {
+            npcs[i] = BenchmarkFixtures.npc(shapes[i % shapes.length], 100, new Location(world, i, 64, i));
+            last = database.saveNPC(npcs[i]);
+        }
+        // Batches commit in queue order, so the last save completing means the table is full
+        last.join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.drainWrites(TimeUnit.SECONDS.toMillis(10));
+        database.close().join();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @Group("idle")
+    public boolean readIdle() {
+        return read();
+    }
+
+    @Benchmark
+    @Group("duringWrites")
+    @GroupThreads(1)
+    public boolean readDuringWrites() {
+        return read();
+    }
+
+    /**
+     * Rewrite the next batch of NPCs and wait for its commit, so a batch is always being written
+     */
+    @Benchmark
+    @Group("duringWrites")
+    @GroupThreads(1)
+    public void writeBatch() {
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < batchSize; i++) {
+            last = database.saveNPC(npcs[writeCursor]);
+            writeCursor = (writeCursor + 1) % npcs.length;
+        }
+        last.join();
+    }
+
+    private boolean read() {
+        UUID npcUuid = npcs[ThreadLocalRandom.current().nextInt(npcs.length)].getNpcUuid();
+        return database.npcExists(npcUuid).join();
+    }
+}
@@ -0,0 +1,81 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.benchmarks;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.GeometryCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.DirectionPool;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeRegistry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building one frame for every built-in shape.
+ * The "points" counter reports generated points per second alongside the per-frame time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShapeGenerationBenchmark {
+    @Param({"CIRCLE", "BOX", "SPHERE", "SPIRAL", "HELIX", "WAVE", "HEART", "RING", "TORNADO", "EXPLOSION", "POINT"})
+    public ParticleShape shape;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int density;
+
+    private ActiveEffect effect;
+    private ParticleFrame frame;
+    private int tick;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class PointCounter {
+        public long points;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            points = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShapeRegistry registry = new ShapeRegistry(DirectionPool.create(4096, 1L));
+        ShapeGenerator generator = registry.get(shape);
+        NPCData npcData = BenchmarkFixtures.npc(shape, density);
+        Location center = new Location(BenchmarkFixtures.world(0, 0), 0, 64, 0);
+        effect = new ActiveEffect(npcData, center, generator, new GeometryCache().get(generator, npcData),
+                new SplittableRandom(42L), null);
+        frame = effect.getFrame();
+    }
+
+    @Benchmark
+    public ParticleFrame generate(PointCounter counter) {
+        effect.getGenerator().generate(effect, tick, frame);
+        if (++tick == BenchmarkFixtures.DURATION) {
+            tick = 0;
+        }
+        counter.points += frame.size();
+        return frame;
+    }
+}
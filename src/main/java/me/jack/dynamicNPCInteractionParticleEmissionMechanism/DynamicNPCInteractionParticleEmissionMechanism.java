@@ -4,10 +4,16 @@ import me.jack.dynamicNPCInteractionParticleEmissionMechanism.commands.DNIPEMCom
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.DatabaseManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.MySQLManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.SQLiteManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners.AmbientListener;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners.NPCChunkListener;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners.NPCClickListener;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners.ProximityListener;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.AmbientEffectManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.NPCManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.ParticleEffectManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.ProximityTriggerManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.PlatformScheduler;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPlugin {
@@ -16,6 +22,8 @@ public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPl
     private DatabaseManager databaseManager;
     private NPCManager npcManager;
     private ParticleEffectManager particleEffectManager;
+    private AmbientEffectManager ambientEffectManager;
+    private ProximityTriggerManager proximityTriggerManager;
 
     @Override
     public void onEnable() {
@@ -29,7 +37,7 @@ public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPl
             databaseManager = new MySQLManager(this, configManager);
             getLogger().info("Using MySQL database");
         } else {
-            databaseManager = new SQLiteManager(this);
+            databaseManager = new SQLiteManager(this, configManager);
             getLogger().info("Using SQLite database");
         }
 
@@ -38,8 +46,12 @@ public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPl
             getLogger().info("Database initialized successfully");
 
             // Initialize managers
-            npcManager = new NPCManager(this, databaseManager);
-            particleEffectManager = new ParticleEffectManager(this);
+            npcManager = new NPCManager(this, databaseManager, configManager);
+            particleEffectManager = new ParticleEffectManager(this, configManager);
+            particleEffectManager.start();
+            ambientEffectManager = new AmbientEffectManager(this, npcManager, particleEffectManager, configManager);
+            ambientEffectManager.start();
+            proximityTriggerManager = new ProximityTriggerManager(npcManager, particleEffectManager, configManager);
 
             // Load NPCs from database
             npcManager.loadAllNPCs().thenRun(() -> {
@@ -52,13 +64,19 @@ public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPl
 
             // Register listener
             getServer().getPluginManager().registerEvents(
-                    new NPCClickListener(npcManager, particleEffectManager),
+                    new NPCClickListener(npcManager, particleEffectManager, configManager, new PlatformScheduler(this)),
                     this
             );
+            if (npcManager.isLazyLoading()) {
+                getServer().getPluginManager().registerEvents(new NPCChunkListener(npcManager), this);
+            }
+            getServer().getPluginManager().registerEvents(new AmbientListener(ambientEffectManager), this);
+            getServer().getPluginManager().registerEvents(new ProximityListener(proximityTriggerManager), this);
             getLogger().info("Event listeners registered");
 
             // Register command
-            DNIPEMCommand commandHandler = new DNIPEMCommand(npcManager, configManager);
+            DNIPEMCommand commandHandler = new DNIPEMCommand(npcManager, particleEffectManager,
+                    ambientEffectManager, proximityTriggerManager, configManager, new PlatformScheduler(this));
             getCommand("dnipem").setExecutor(commandHandler);
             getCommand("dnipem").setTabCompleter(commandHandler);
             getLogger().info("Commands registered");
@@ -74,6 +92,25 @@ public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPl
 
     @Override
     public void onDisable() {
+        // Stop ambient loops before the engine they run on
+        if (ambientEffectManager != null) {
+            ambientEffectManager.shutdown();
+        }
+
+        // Write queued NPC changes before the snapshot is stamped with the database revision
+        if (databaseManager != null) {
+            databaseManager.drainWrites(configManager.getWriteShutdownTimeoutSeconds() * 1000L);
+        }
+
+        if (npcManager != null) {
+            npcManager.shutdown();
+        }
+
+        // Stop the particle effect engine
+        if (particleEffectManager != null) {
+            particleEffectManager.shutdown();
+        }
+
         // Close database connection
         if (databaseManager != null) {
             databaseManager.close().thenRun(() -> {
@@ -99,4 +136,12 @@ public final class DynamicNPCInteractionParticleEmissionMechanism extends JavaPl
     public ParticleEffectManager getParticleEffectManager() {
         return particleEffectManager;
     }
+
+    public AmbientEffectManager getAmbientEffectManager() {
+        return ambientEffectManager;
+    }
+
+    public ProximityTriggerManager getProximityTriggerManager() {
+        return proximityTriggerManager;
+    }
 }
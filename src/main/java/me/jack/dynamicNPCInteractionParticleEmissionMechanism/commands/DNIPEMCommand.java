@@ -1,9 +1,18 @@
 package me.jack.dynamicNPCInteractionParticleEmissionMechanism.commands;
 
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.WriteBehindQueue;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.FrameCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleBudget;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.AmbientEffectManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.NPCManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.ParticleEffectManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.ProximityTriggerManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.PlatformScheduler;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.RayTraceUtil;
+import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -13,17 +22,32 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
+/**
+ * The /dnipem command. Subcommands that read a player or an NPC entity run on the thread owning
+ * it, and reload runs on the global region, so every handler is safe on Folia; stats only reads
+ * counters and runs wherever the command was dispatched.
+ */
 public class DNIPEMCommand implements CommandExecutor, TabCompleter {
     private final NPCManager npcManager;
+    private final ParticleEffectManager particleEffectManager;
+    private final AmbientEffectManager ambientEffectManager;
+    private final ProximityTriggerManager proximityTriggerManager;
     private final ConfigManager configManager;
+    private final PlatformScheduler scheduler;
 
-    public DNIPEMCommand(NPCManager npcManager, ConfigManager configManager) {
+    public DNIPEMCommand(NPCManager npcManager, ParticleEffectManager particleEffectManager,
+                         AmbientEffectManager ambientEffectManager, ProximityTriggerManager proximityTriggerManager,
+                         ConfigManager configManager, PlatformScheduler scheduler) {
         this.npcManager = npcManager;
+        this.particleEffectManager = particleEffectManager;
+        this.ambientEffectManager = ambientEffectManager;
+        this.proximityTriggerManager = proximityTriggerManager;
         this.configManager = configManager;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -32,9 +56,10 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("§e=== DNIPEM Commands ===");
             sender.sendMessage("§7/dnipem add - Register the NPC you're looking at");
             sender.sendMessage("§7/dnipem remove - Remove the NPC you're looking at");
-            sender.sendMessage("§7/dnipem list - List all registered NPCs");
+            sender.sendMessage("§7/dnipem list [radius] - List registered NPCs, optionally only those near you");
             sender.sendMessage("§7/dnipem info - Show info about the NPC you're looking at");
             sender.sendMessage("§7/dnipem reload - Reload configuration");
+            sender.sendMessage("§7/dnipem stats - Show particle engine statistics");
             return true;
         }
 
@@ -42,21 +67,37 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
 
         switch (subCommand) {
             case "add":
-                return handleAdd(sender);
+                return onSenderThread(sender, () -> handleAdd(sender));
             case "remove":
-                return handleRemove(sender);
+                return onSenderThread(sender, () -> handleRemove(sender));
             case "list":
-                return handleList(sender);
+                return onSenderThread(sender, () -> handleList(sender, args));
             case "info":
-                return handleInfo(sender);
+                return onSenderThread(sender, () -> handleInfo(sender));
             case "reload":
-                return handleReload(sender);
+                scheduler.runGlobal(() -> handleReload(sender));
+                return true;
+            case "stats":
+                return handleStats(sender);
             default:
                 sender.sendMessage("§cUnknown subcommand. Use /dnipem for help.");
                 return true;
         }
     }
 
+    /**
+     * Run a handler on the thread owning the sending player, or right away for other senders.
+     * Handlers report their own errors, so the command always counts as handled.
+     */
+    private boolean onSenderThread(CommandSender sender, Runnable handler) {
+        if (sender instanceof Player) {
+            scheduler.runAtEntity((Player) sender, handler);
+        } else {
+            handler.run();
+        }
+        return true;
+    }
+
     private boolean handleAdd(CommandSender sender) {
         if (!sender.hasPermission("dnipem.add")) {
             sender.sendMessage(configManager.getMessage("no-permission"));
@@ -76,28 +117,29 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        // Create NPC data with default settings
-        NPCData npcData = new NPCData(
-                targetEntity.getUniqueId(),
-                targetEntity.getLocation(),
-                configManager.getDefaultParticleType(),
-                configManager.getDefaultShape(),
-                configManager.getDefaultTargetMode(),
-                configManager.getDefaultDensity(),
-                configManager.getDefaultSpeed(),
-                configManager.getDefaultDuration(),
-                configManager.getDefaultRadius(),
-                configManager.getDefaultHeight(),
-                configManager.getDefaultRotations(),
-                configManager.getDefaultAnimationSpeed()
-        );
-
-        npcManager.registerNPC(npcData).thenRun(() -> {
-            sender.sendMessage(configManager.getMessage("npc-added"));
-        }).exceptionally(throwable -> {
-            sender.sendMessage(configManager.getMessage("database-error"));
-            throwable.printStackTrace();
-            return null;
+        // The NPC may belong to another region than the player; read it on its own thread
+        scheduler.runAtEntity(targetEntity, () -> {
+            // Create NPC data with default settings
+            NPCData npcData = new NPCData(targetEntity.getUniqueId(), targetEntity.getLocation(), EffectProfile.of(
+                    configManager.getDefaultParticleType(),
+                    configManager.getDefaultShape(),
+                    configManager.getDefaultTargetMode(),
+                    configManager.getDefaultDensity(),
+                    configManager.getDefaultSpeed(),
+                    configManager.getDefaultDuration(),
+                    configManager.getDefaultRadius(),
+                    configManager.getDefaultHeight(),
+                    configManager.getDefaultRotations(),
+                    configManager.getDefaultAnimationSpeed()
+            ));
+
+            npcManager.registerNPC(npcData).thenRun(() -> {
+                sender.sendMessage(configManager.getMessage("npc-added"));
+            }).exceptionally(throwable -> {
+                sender.sendMessage(configManager.getMessage("database-error"));
+                throwable.printStackTrace();
+                return null;
+            });
         });
 
         return true;
@@ -138,13 +180,35 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
-    private boolean handleList(CommandSender sender) {
+    private boolean handleList(CommandSender sender, String[] args) {
         if (!sender.hasPermission("dnipem.list")) {
             sender.sendMessage(configManager.getMessage("no-permission"));
             return true;
         }
 
-        Map<UUID, NPCData> npcs = npcManager.getAllNPCs();
+        Collection<NPCData> npcs;
+        if (args.length > 1) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage("§cOnly players can list nearby NPCs.");
+                return true;
+            }
+
+            double radius;
+            try {
+                radius = Double.parseDouble(args[1]);
+            } catch (NumberFormatException e) {
+                sender.sendMessage("§cInvalid radius: " + args[1]);
+                return true;
+            }
+
+            Location location = ((Player) sender).getLocation();
+            List<NPCData> nearby = new ArrayList<>();
+            npcManager.getSpatialIndex().forEachInRadius(location.getWorld(),
+                    location.getX(), location.getY(), location.getZ(), radius, nearby::add);
+            npcs = nearby;
+        } else {
+            npcs = npcManager.getAllNPCs().values();
+        }
 
         if (npcs.isEmpty()) {
             sender.sendMessage("§eNo NPCs registered.");
@@ -152,7 +216,7 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
         }
 
         sender.sendMessage(configManager.getMessage("npc-list-header"));
-        for (NPCData npcData : npcs.values()) {
+        for (NPCData npcData : npcs) {
             String message = configManager.getMessage("npc-list-entry",
                     "uuid", npcData.getNpcUuid().toString(),
                     "world", npcData.getLocation().getWorld().getName(),
@@ -229,6 +293,9 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
         }
 
         configManager.reload();
+        particleEffectManager.reload();
+        ambientEffectManager.reload();
+        proximityTriggerManager.reload();
         npcManager.loadAllNPCs().thenRun(() -> {
             sender.sendMessage(configManager.getMessage("reload-complete"));
         }).exceptionally(throwable -> {
@@ -240,10 +307,85 @@ public class DNIPEMCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.hasPermission("dnipem.stats")) {
+            sender.sendMessage(configManager.getMessage("no-permission"));
+            return true;
+        }
+
+        sender.sendMessage("§e=== DNIPEM Engine Stats ===");
+        sender.sendMessage("§7Active effects: §f" + particleEffectManager.getActiveEffectCount()
+                + " §7in §f" + particleEffectManager.getPartitionCount() + " §7partitions");
+        sender.sendMessage("§7Display effects: §f" + particleEffectManager.getDisplayEffectCount()
+                + " §7(§f" + particleEffectManager.getDisplayEntityCount() + " §7entities)");
+        sender.sendMessage("§7Effect profiles: §f" + EffectProfile.getInternedCount()
+                + " §7shared by §f" + npcManager.getCount() + " §7NPCs");
+        if (npcManager.isLoading()) {
+            sender.sendMessage("§7Loading NPCs: §f" + npcManager.getLoadedRows() + "§7/§f" + npcManager.getTotalRows()
+                    + " §7(§f" + String.format("%.0f", npcManager.getLoadRate()) + " §7NPCs/s)");
+        } else if (npcManager.getTotalRows() > 0) {
+            sender.sendMessage("§7Last load: §f" + npcManager.getLoadedRows() + " §7NPCs at §f"
+                    + String.format("%.0f", npcManager.getLoadRate()) + " §7NPCs/s");
+        }
+        if (npcManager.isLazyLoading()) {
+            sender.sendMessage("§7Lazy loading: §f" + npcManager.getTrackedChunkCount() + " §7chunks tracked, §f"
+                    + npcManager.getPendingChunkCount() + " §7pending, §f" + npcManager.getLazyLoadedCount()
+                    + " §7NPCs loaded, §f" + npcManager.getEvictedCount() + " §7evicted");
+        }
+        WriteBehindQueue writeQueue = npcManager.getWriteQueue();
+        sender.sendMessage("§7Write queue: §f" + writeQueue.getDepth() + " §7waiting, §f"
+                + writeQueue.getCoalescedWrites() + " §7merged, §f" + writeQueue.getFlushedWrites() + " §7written in §f"
+                + writeQueue.getBatchCount() + " §7batches (§f" + writeQueue.getFailedBatchCount() + " §7failed)");
+        sender.sendMessage("§7Write batches: §f" + writeQueue.getLastBatchSize() + " §7last, §f"
+                + String.format("%.1f", writeQueue.getAverageBatchSize()) + " §7avg, §f" + writeQueue.getLargestBatchSize()
+                + " §7max; flush §f" + String.format("%.2f", writeQueue.getLastFlushNanos() / 1_000_000.0)
+                + " §7ms last, §f" + String.format("%.2f", writeQueue.getAverageFlushNanos() / 1_000_000.0) + " §7ms avg");
+        sender.sendMessage("§7Indexed NPCs: §f" + npcManager.getSpatialIndex().size()
+                + " §7in §f" + npcManager.getSpatialIndex().getChunkCount() + " §7chunks");
+        sender.sendMessage("§7Ambient loops: §f" + ambientEffectManager.getRunningCount() + " §7running, §f"
+                + ambientEffectManager.getArmedCount() + "§7/§f" + ambientEffectManager.getAmbientNpcCount() + " §7NPCs in loaded chunks");
+        sender.sendMessage("§7Proximity zones: §f" + proximityTriggerManager.getZoneCount()
+                + " §7Triggers: §f" + proximityTriggerManager.getTriggers()
+                + " §7Moves evaluated: §f" + proximityTriggerManager.getEvaluations()
+                + "§7, skipped: §f" + proximityTriggerManager.getSkippedMoves());
+        sender.sendMessage("§7Effects without viewers: §f" + particleEffectManager.getLastUnviewedEffects());
+        sender.sendMessage("§7Particles sent last tick: §f" + particleEffectManager.getLastParticlesSent());
+
+        ParticleBudget budget = particleEffectManager.getParticleBudget();
+        sender.sendMessage("§7Particle budget: §f" + budget.getCurrentBudget() + "§7/§f" + budget.getBaseBudget()
+                + " §7per tick (level §f" + budget.getLevel() + "§7, MSPT §f" + String.format("%.1f", budget.getLastMspt()) + "§7)");
+        sender.sendMessage("§7Particles shed: §f" + particleEffectManager.getLastParticlesShed()
+                + " §7last tick, §f" + particleEffectManager.getTotalParticlesShed() + " §7total");
+        sender.sendMessage("§7Sections at density cap: §f" + particleEffectManager.getLastCappedSections());
+        sender.sendMessage("§7Emission slices: §f" + particleEffectManager.getLastEmissionSlices()
+                + " §7(§f" + String.format("%.0f", particleEffectManager.getNanosPerParticle()) + " ns§7 per particle)");
+        sender.sendMessage("§7Coalesced triggers: §f" + particleEffectManager.getCoalescedTriggers()
+                + " §7Rate-limited clicks: §f" + particleEffectManager.getRateLimitedClicks());
+        if (particleEffectManager.isAsyncGenerationEnabled()) {
+            sender.sendMessage("§7Frames prepared off-thread: §f" + particleEffectManager.getLastPreparedFrames()
+                    + " §7(waited §f" + String.format("%.3f", particleEffectManager.getLastGenerationWaitNanos() / 1_000_000.0) + " ms§7)");
+        }
+        sender.sendMessage("§7Last step: §f" + String.format("%.3f", particleEffectManager.getLastStepNanos() / 1_000_000.0) + " ms");
+        sender.sendMessage("§7Average step: §f" + String.format("%.3f", particleEffectManager.getAverageStepNanos() / 1_000_000.0) + " ms");
+        sender.sendMessage("§7Cached shapes: §f" + particleEffectManager.getCachedGeometryCount());
+        FrameCache frameCache = particleEffectManager.getFrameCache();
+        if (frameCache != null) {
+            long hits = frameCache.getHits();
+            long lookups = hits + frameCache.getMisses();
+            sender.sendMessage("§7Frame cache: §f" + hits + " §7hits, §f" + frameCache.getMisses() + " §7misses ("
+                    + String.format("%.1f", lookups > 0 ? hits * 100.0 / lookups : 0.0) + "%), §f"
+                    + frameCache.getCachedPoints() + " §7points cached");
+        }
+        sender.sendMessage("§7Baked animations: §f" + particleEffectManager.getBakedAnimationCount()
+                + " §7(" + String.format("%.1f", particleEffectManager.getBakedAnimationBytes() / (1024.0 * 1024.0)) + " MB mapped)");
+
+        return true;
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            List<String> subCommands = Arrays.asList("add", "remove", "list", "info", "reload");
+            List<String> subCommands = Arrays.asList("add", "remove", "list", "info", "reload", "stats");
             List<String> completions = new ArrayList<>();
             
             for (String subCommand : subCommands) {
@@ -0,0 +1,48 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection that keeps its prepared statements open and hands the same one back for the same
+ * SQL, so hot queries are parsed once per connection. Not thread-safe: one thread uses it at a
+ * time, and callers must not close the statements they get.
+ */
+final class CachedConnection implements AutoCloseable {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    CachedConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Get the cached statement for this SQL, with its parameters cleared
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        } else {
+            stmt.clearParameters();
+        }
+        return stmt;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (PreparedStatement stmt : statements.values()) {
+            stmt.close();
+        }
+        statements.clear();
+        connection.close();
+    }
+}
@@ -2,11 +2,26 @@ package me.jack.dynamicNPCInteractionParticleEmissionMechanism.database;
 
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 public abstract class DatabaseManager {
+    private static final String CHUNK_INDEX = "idx_npc_particles_chunk";
+
+    private final WriteBehindQueue writeQueue;
+
+    protected DatabaseManager(Logger logger, int writeBatchSize, long writeMaxDelayMillis) {
+        this.writeQueue = new WriteBehindQueue(this::writeBatch, logger, writeBatchSize, writeMaxDelayMillis);
+    }
 
     /**
      * Initialize the database connection and create tables
@@ -19,14 +34,53 @@ public abstract class DatabaseManager {
     public abstract CompletableFuture<Void> close();
 
     /**
-     * Save an NPC to the database
+     * Queue an NPC to be saved; completes once the batch holding it is committed
+     */
+    public CompletableFuture<Void> saveNPC(NPCData npcData) {
+        return writeQueue.save(npcData, null);
+    }
+
+    /**
+     * Queue an NPC to be saved. onCommit runs on the write-behind thread once the batch holding
+     * it is committed, in the order the changes to that NPC were queued.
      */
-    public abstract CompletableFuture<Void> saveNPC(NPCData npcData);
+    public CompletableFuture<Void> saveNPC(NPCData npcData, Runnable onCommit) {
+        return writeQueue.save(npcData, onCommit);
+    }
 
     /**
-     * Remove an NPC from the database
+     * Queue an NPC to be removed; completes once the batch holding it is committed
      */
-    public abstract CompletableFuture<Void> removeNPC(UUID npcUuid);
+    public CompletableFuture<Void> removeNPC(UUID npcUuid) {
+        return writeQueue.remove(npcUuid, null);
+    }
+
+    /**
+     * Queue an NPC to be removed, running onCommit like {@link #saveNPC(NPCData, Runnable)}
+     */
+    public CompletableFuture<Void> removeNPC(UUID npcUuid, Runnable onCommit) {
+        return writeQueue.remove(npcUuid, onCommit);
+    }
+
+    /**
+     * Write everything still queued, waiting at most the timeout. Further saves and removals
+     * fail, so call this only when shutting down, before {@link #close()}.
+     *
+     * @return false if changes were still queued when the timeout ran out
+     */
+    public boolean drainWrites(long timeoutMillis) {
+        return writeQueue.drain(timeoutMillis);
+    }
+
+    public WriteBehindQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Save and remove a batch of NPCs in one transaction. Called on the write-behind thread only;
+     * every NPC appears at most once across both lists.
+     */
+    protected abstract void writeBatch(List<NPCData> saves, List<UUID> removals) throws SQLException;
 
     /**
      * Get an NPC by UUID
@@ -38,8 +92,134 @@ public abstract class DatabaseManager {
      */
     public abstract CompletableFuture<List<NPCData>> getAllNPCs();
 
+    /**
+     * Read every NPC with a forward-only cursor, handing them to the consumer in batches as they
+     * arrive instead of building one list. The batch list is reused once the consumer returns.
+     * Fails if the read fails partway; batches already handed over stay handed over.
+     *
+     * @return the number of NPCs read
+     */
+    public abstract CompletableFuture<Long> streamAllNPCs(int batchSize, Consumer<List<NPCData>> consumer);
+
+    /**
+     * Count the stored NPCs
+     */
+    public abstract CompletableFuture<Long> countNPCs();
+
+    /**
+     * Get the NPCs stored in the given chunks of one world. Chunk keys are laid out like
+     * Paper's Chunk#getChunkKey.
+     */
+    public abstract CompletableFuture<List<NPCData>> getNPCsInChunks(String worldName, long[] chunkKeys);
+
+    /**
+     * Get the keys of every chunk of a world that holds at least one NPC
+     */
+    public abstract CompletableFuture<long[]> getNPCChunks(String worldName);
+
+    /**
+     * Get the registry revision, a counter the database bumps on every change to the NPC table
+     * (including edits made outside the plugin). It starts from a random value, so a recreated
+     * database never repeats an old revision.
+     *
+     * @return the revision, or -1 if this database cannot track it
+     */
+    public abstract CompletableFuture<Long> getRegistryRevision();
+
     /**
      * Check if an NPC exists in the database
      */
     public abstract CompletableFuture<Boolean> npcExists(UUID npcUuid);
+
+    /**
+     * Add the chunk_x and chunk_z columns and their index to tables created before they existed,
+     * filling them in for existing rows
+     */
+    protected void migrateChunkColumns(Connection connection, Logger logger) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        boolean hasChunkColumns;
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, "npc_particles", "chunk_x")) {
+            hasChunkColumns = columns.next();
+        }
+        if (!hasChunkColumns) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ALTER TABLE npc_particles ADD COLUMN chunk_x INT");
+                stmt.execute("ALTER TABLE npc_particles ADD COLUMN chunk_z INT");
+            }
+        }
+
+        boolean hasIndex = false;
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, "npc_particles", false, false)) {
+            while (indexes.next()) {
+                if (CHUNK_INDEX.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    hasIndex = true;
+                    break;
+                }
+            }
+        }
+        if (!hasIndex) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE INDEX " + CHUNK_INDEX + " ON npc_particles (world_name, chunk_x, chunk_z)");
+            }
+        }
+
+        // Chunk coordinates are computed here rather than in SQL, since floor() is not portable
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        int filled = 0;
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery("SELECT npc_uuid, x, z FROM npc_particles WHERE chunk_x IS NULL OR chunk_z IS NULL");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE npc_particles SET chunk_x = ?, chunk_z = ? WHERE npc_uuid = ?")) {
+            while (rs.next()) {
+                update.setInt(1, chunkCoord(rs.getDouble("x")));
+                update.setInt(2, chunkCoord(rs.getDouble("z")));
+                update.setString(3, rs.getString("npc_uuid"));
+                update.addBatch();
+                if (++filled % 1000 == 0) {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (filled > 0) {
+            logger.info("Filled in chunk coordinates for " + filled + " NPCs");
+        }
+    }
+
+    /**
+     * Bind an NPC to the 17 parameters of an insert into npc_particles, in column order
+     */
+    protected static void bindNPC(PreparedStatement stmt, NPCData npcData) throws SQLException {
+        stmt.setString(1, npcData.getNpcUuid().toString());
+        stmt.setString(2, npcData.getLocation().getWorld().getName());
+        stmt.setDouble(3, npcData.getLocation().getX());
+        stmt.setDouble(4, npcData.getLocation().getY());
+        stmt.setDouble(5, npcData.getLocation().getZ());
+        stmt.setString(6, npcData.getParticleType().name());
+        stmt.setString(7, npcData.getShape().name());
+        stmt.setString(8, npcData.getTargetMode().name());
+        stmt.setInt(9, npcData.getDensity());
+        stmt.setDouble(10, npcData.getSpeed());
+        stmt.setInt(11, npcData.getDuration());
+        stmt.setDouble(12, npcData.getRadius());
+        stmt.setDouble(13, npcData.getHeight());
+        stmt.setInt(14, npcData.getRotations());
+        stmt.setDouble(15, npcData.getAnimationSpeed());
+        stmt.setInt(16, chunkCoord(npcData.getLocation().getX()));
+        stmt.setInt(17, chunkCoord(npcData.getLocation().getZ()));
+    }
+
+    /**
+     * Chunk coordinate of a block coordinate, matching Location#getBlockX() >> 4
+     */
+    protected static int chunkCoord(double coordinate) {
+        return (int) Math.floor(coordinate) >> 4;
+    }
 }
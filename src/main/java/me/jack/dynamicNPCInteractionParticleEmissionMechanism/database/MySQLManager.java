@@ -2,6 +2,7 @@ package me.jack.dynamicNPCInteractionParticleEmissionMechanism.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
@@ -16,13 +17,18 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public class MySQLManager extends DatabaseManager {
     private final JavaPlugin plugin;
     private final ConfigManager configManager;
     private HikariDataSource dataSource;
+    private volatile boolean revisionTracked;
 
     public MySQLManager(JavaPlugin plugin, ConfigManager configManager) {
+        super(plugin.getLogger(), configManager.getWriteBatchSize(), configManager.getWriteMaxDelayMillis());
         this.plugin = plugin;
         this.configManager = configManager;
     }
@@ -34,7 +40,9 @@ public class MySQLManager extends DatabaseManager {
                 HikariConfig config = new HikariConfig();
                 config.setJdbcUrl("jdbc:mysql://" + configManager.getMySQLHost() + ":" +
                         configManager.getMySQLPort() + "/" + configManager.getMySQLDatabase() +
-                        "?useSSL=" + configManager.getMySQLUseSSL());
+                        "?useSSL=" + configManager.getMySQLUseSSL() +
+                        // Lets the driver send a batch as one multi-row statement
+                        "&rewriteBatchedStatements=true");
                 config.setUsername(configManager.getMySQLUsername());
                 config.setPassword(configManager.getMySQLPassword());
                 config.setMaximumPoolSize(10);
@@ -62,12 +70,17 @@ public class MySQLManager extends DatabaseManager {
                         "height DOUBLE NOT NULL," +
                         "rotations INT NOT NULL," +
                         "animation_speed DOUBLE NOT NULL," +
+                        "chunk_x INT," +
+                        "chunk_z INT," +
                         "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
                         ")";
 
-                try (Connection conn = dataSource.getConnection();
-                     Statement stmt = conn.createStatement()) {
-                    stmt.execute(createTable);
+                try (Connection conn = dataSource.getConnection()) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute(createTable);
+                    }
+                    migrateChunkColumns(conn, plugin.getLogger());
+                    installRevisionTriggers(conn);
                 }
 
                 plugin.getLogger().info("MySQL database initialized successfully");
@@ -94,59 +107,45 @@ public class MySQLManager extends DatabaseManager {
     }
 
     @Override
-    public CompletableFuture<Void> saveNPC(NPCData npcData) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "INSERT INTO npc_particles " +
-                    "(npc_uuid, world_name, x, y, z, particle_type, shape, target_mode, " +
-                    "density, speed, duration, radius, height, rotations, animation_speed) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
-                    "ON DUPLICATE KEY UPDATE " +
-                    "world_name = VALUES(world_name), x = VALUES(x), y = VALUES(y), z = VALUES(z), " +
-                    "particle_type = VALUES(particle_type), shape = VALUES(shape), target_mode = VALUES(target_mode), " +
-                    "density = VALUES(density), speed = VALUES(speed), duration = VALUES(duration), " +
-                    "radius = VALUES(radius), height = VALUES(height), rotations = VALUES(rotations), " +
-                    "animation_speed = VALUES(animation_speed)";
-
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, npcData.getNpcUuid().toString());
-                stmt.setString(2, npcData.getLocation().getWorld().getName());
-                stmt.setDouble(3, npcData.getLocation().getX());
-                stmt.setDouble(4, npcData.getLocation().getY());
-                stmt.setDouble(5, npcData.getLocation().getZ());
-                stmt.setString(6, npcData.getParticleType().name());
-                stmt.setString(7, npcData.getShape().name());
-                stmt.setString(8, npcData.getTargetMode().name());
-                stmt.setInt(9, npcData.getDensity());
-                stmt.setDouble(10, npcData.getSpeed());
-                stmt.setInt(11, npcData.getDuration());
-                stmt.setDouble(12, npcData.getRadius());
-                stmt.setDouble(13, npcData.getHeight());
-                stmt.setInt(14, npcData.getRotations());
-                stmt.setDouble(15, npcData.getAnimationSpeed());
-
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to save NPC to database: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
-    }
-
-    @Override
-    public CompletableFuture<Void> removeNPC(UUID npcUuid) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "DELETE FROM npc_particles WHERE npc_uuid = ?";
-
-            try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, npcUuid.toString());
-                stmt.executeUpdate();
+    protected void writeBatch(List<NPCData> saves, List<UUID> removals) throws SQLException {
+        String saveSql = "INSERT INTO npc_particles " +
+                "(npc_uuid, world_name, x, y, z, particle_type, shape, target_mode, " +
+                "density, speed, duration, radius, height, rotations, animation_speed, chunk_x, chunk_z) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE " +
+                "world_name = VALUES(world_name), x = VALUES(x), y = VALUES(y), z = VALUES(z), " +
+                "particle_type = VALUES(particle_type), shape = VALUES(shape), target_mode = VALUES(target_mode), " +
+                "density = VALUES(density), speed = VALUES(speed), duration = VALUES(duration), " +
+                "radius = VALUES(radius), height = VALUES(height), rotations = VALUES(rotations), " +
+                "animation_speed = VALUES(animation_speed), chunk_x = VALUES(chunk_x), chunk_z = VALUES(chunk_z)";
+        String removeSql = "DELETE FROM npc_particles WHERE npc_uuid = ?";
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement save = conn.prepareStatement(saveSql);
+                 PreparedStatement remove = conn.prepareStatement(removeSql)) {
+                for (NPCData npcData : saves) {
+                    bindNPC(save, npcData);
+                    save.addBatch();
+                }
+                for (UUID npcUuid : removals) {
+                    remove.setString(1, npcUuid.toString());
+                    remove.addBatch();
+                }
+                if (!saves.isEmpty()) {
+                    save.executeBatch();
+                }
+                if (!removals.isEmpty()) {
+                    remove.executeBatch();
+                }
+                conn.commit();
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to remove NPC from database: " + e.getMessage());
-                e.printStackTrace();
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-        });
+        }
     }
 
     @Override
@@ -196,6 +195,171 @@ public class MySQLManager extends DatabaseManager {
         });
     }
 
+    @Override
+    public CompletableFuture<Long> streamAllNPCs(int batchSize, Consumer<List<NPCData>> consumer) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<NPCData> batch = new ArrayList<>(batchSize);
+            long count = 0;
+            String sql = "SELECT * FROM npc_particles";
+
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // Connector/J streams rows one at a time instead of buffering the whole result
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        NPCData npcData = extractNPCData(rs);
+                        if (npcData == null) {
+                            continue;
+                        }
+                        batch.add(npcData);
+                        count++;
+                        if (batch.size() >= batchSize) {
+                            consumer.accept(batch);
+                            batch.clear();
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    consumer.accept(batch);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to stream NPCs from database: " + e.getMessage());
+                // Fail rather than return a partial count, so callers never mistake it for the whole table
+                throw new CompletionException(e);
+            }
+
+            return count;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> countNPCs() {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM npc_particles")) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to count NPCs: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            return 0L;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<NPCData>> getNPCsInChunks(String worldName, long[] chunkKeys) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<NPCData> npcs = new ArrayList<>();
+            String sql = "SELECT * FROM npc_particles WHERE world_name = ? AND chunk_x = ? AND chunk_z = ?";
+
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, worldName);
+                for (long chunkKey : chunkKeys) {
+                    stmt.setInt(2, (int) chunkKey);
+                    stmt.setInt(3, (int) (chunkKey >>> 32));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            NPCData npcData = extractNPCData(rs);
+                            if (npcData != null) {
+                                npcs.add(npcData);
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to get NPCs in chunks from database: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            return npcs;
+        });
+    }
+
+    @Override
+    public CompletableFuture<long[]> getNPCChunks(String worldName) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Long> chunkKeys = new ArrayList<>();
+            String sql = "SELECT DISTINCT chunk_x, chunk_z FROM npc_particles WHERE world_name = ?";
+
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, worldName);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        chunkKeys.add((rs.getInt(1) & 0xffffffffL) | ((rs.getInt(2) & 0xffffffffL) << 32));
+                    }
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to get NPC chunks from database: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            return chunkKeys.stream().mapToLong(Long::longValue).toArray();
+        });
+    }
+
+    /**
+     * Create the registry revision table and the triggers that bump it. Creating triggers needs
+     * the TRIGGER privilege; without it the revision is not tracked and snapshots are not used.
+     */
+    private void installRevisionTriggers(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS npc_registry_revision (" +
+                    "id INT PRIMARY KEY," +
+                    "revision BIGINT NOT NULL" +
+                    ")");
+            stmt.execute("INSERT IGNORE INTO npc_registry_revision (id, revision) VALUES (1, "
+                    + ThreadLocalRandom.current().nextLong(1L << 48) + ")");
+
+            for (String event : new String[]{"INSERT", "UPDATE", "DELETE"}) {
+                String name = "npc_particles_revision_" + event.toLowerCase();
+                try (PreparedStatement exists = conn.prepareStatement("SELECT 1 FROM information_schema.TRIGGERS " +
+                        "WHERE TRIGGER_SCHEMA = DATABASE() AND TRIGGER_NAME = ?")) {
+                    exists.setString(1, name);
+                    try (ResultSet rs = exists.executeQuery()) {
+                        if (rs.next()) {
+                            continue;
+                        }
+                    }
+                }
+                stmt.execute("CREATE TRIGGER " + name + " AFTER " + event + " ON npc_particles FOR EACH ROW " +
+                        "UPDATE npc_registry_revision SET revision = revision + 1 WHERE id = 1");
+            }
+            revisionTracked = true;
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Could not install registry revision triggers, registry snapshots are disabled: "
+                    + e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> getRegistryRevision() {
+        if (!revisionTracked) {
+            return CompletableFuture.completedFuture(-1L);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection conn = dataSource.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT revision FROM npc_registry_revision WHERE id = 1")) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to read registry revision: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            return -1L;
+        });
+    }
+
     @Override
     public CompletableFuture<Boolean> npcExists(UUID npcUuid) {
         return CompletableFuture.supplyAsync(() -> {
@@ -238,9 +402,7 @@ public class MySQLManager extends DatabaseManager {
         ParticleShape shape = ParticleShape.valueOf(rs.getString("shape"));
         TargetMode targetMode = TargetMode.valueOf(rs.getString("target_mode"));
 
-        return new NPCData(
-                npcUuid,
-                location,
+        return new NPCData(npcUuid, location, EffectProfile.of(
                 particleType,
                 shape,
                 targetMode,
@@ -251,6 +413,6 @@ public class MySQLManager extends DatabaseManager {
                 rs.getDouble("height"),
                 rs.getInt("rotations"),
                 rs.getDouble("animation_speed")
-        );
+        ));
     }
 }
@@ -0,0 +1,251 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.database;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * The whole NPC registry in one memory-mapped file, so a warm restart can skip the database.
+ * The file is stamped with the database's registry revision and is only used while the
+ * database still reports that revision. World names and effect profiles are stored once and
+ * referenced by index; enum values are stored by name so the file survives enum reordering.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ * int magic, int version, long registryRevision, int worlds, int profiles, int npcs
+ * worlds x (short length, UTF-8 name)
+ * profiles x (string particle, string shape, string targetMode, int density, double speed,
+ *             int duration, double radius, double height, int rotations, double animationSpeed)
+ * npcs x (long uuidMost, long uuidLeast, int world, int profile, double x, double y, double z)
+ * long crc32 of everything before it
+ * </pre>
+ */
+public final class RegistrySnapshot {
+    private static final int MAGIC = 0x44_4E_50_52; // "DNPR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 28;
+    private static final int NPC_BYTES = 48;
+
+    private RegistrySnapshot() {
+    }
+
+    /**
+     * Read a snapshot, handing every NPC to the consumer. Nothing is handed over unless the whole
+     * file is usable: it must be intact, stamped with the given revision and refer only to
+     * worlds that are loaded.
+     *
+     * @return the number of NPCs read, or -1 if the snapshot is missing, stale or unusable
+     */
+    public static int load(Path file, long registryRevision, Consumer<NPCData> consumer) throws IOException {
+        return load(file, registryRevision, Bukkit::getWorld, consumer);
+    }
+
+    /**
+     * Read a snapshot, resolving world names with the given function instead of the server's worlds
+     */
+    public static int load(Path file, long registryRevision, Function<String, World> worldResolver,
+                           Consumer<NPCData> consumer) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return -1;
+        }
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 8 || size > Integer.MAX_VALUE) {
+                return -1;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != registryRevision) {
+            return -1;
+        }
+        int end = buffer.capacity() - 8;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(end));
+        if (crc.getValue() != buffer.getLong(end)) {
+            return -1;
+        }
+
+        int worldCount = buffer.getInt(16);
+        int profileCount = buffer.getInt(20);
+        int npcCount = buffer.getInt(24);
+        if (worldCount < 0 || profileCount < 0 || npcCount < 0) {
+            return -1;
+        }
+
+        ByteBuffer reader = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(HEADER_BYTES).limit(end);
+        World[] worlds = new World[worldCount];
+        for (int i = 0; i < worldCount; i++) {
+            worlds[i] = worldResolver.apply(readString(reader));
+            if (worlds[i] == null) {
+                // NPCs of a missing world are skipped by a database load too; let it decide
+                return -1;
+            }
+        }
+
+        EffectProfile[] profiles = new EffectProfile[profileCount];
+        try {
+            for (int i = 0; i < profileCount; i++) {
+                Particle particleType = Particle.valueOf(readString(reader));
+                ParticleShape shape = ParticleShape.valueOf(readString(reader));
+                TargetMode targetMode = TargetMode.valueOf(readString(reader));
+                profiles[i] = EffectProfile.of(particleType, shape, targetMode, reader.getInt(), reader.getDouble(),
+                        reader.getInt(), reader.getDouble(), reader.getDouble(), reader.getInt(), reader.getDouble());
+            }
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+
+        int offset = reader.position();
+        if ((long) offset + (long) npcCount * NPC_BYTES != end) {
+            return -1;
+        }
+        for (int i = 0; i < npcCount; i++) {
+            int world = buffer.getInt(offset + 16);
+            int profile = buffer.getInt(offset + 20);
+            if (world < 0 || world >= worldCount || profile < 0 || profile >= profileCount) {
+                return -1;
+            }
+            offset += NPC_BYTES;
+        }
+
+        offset = reader.position();
+        for (int i = 0; i < npcCount; i++) {
+            UUID npcUuid = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+            Location location = new Location(worlds[buffer.getInt(offset + 16)],
+                    buffer.getDouble(offset + 24), buffer.getDouble(offset + 32), buffer.getDouble(offset + 40));
+            consumer.accept(new NPCData(npcUuid, location, profiles[buffer.getInt(offset + 20)]));
+            offset += NPC_BYTES;
+        }
+        return npcCount;
+    }
+
+    /**
+     * Write the registry to the file, stamped with the database's current registry revision.
+     * The collection is walked twice, so it must not change while this runs.
+     */
+    public static void write(Path file, long registryRevision, Collection<NPCData> npcs) throws IOException {
+        Map<String, Integer> worldIndex = new HashMap<>();
+        List<String> worldNames = new ArrayList<>();
+        // Profiles are interned, so identity is enough to find the distinct ones
+        Map<EffectProfile, Integer> profileIndex = new IdentityHashMap<>();
+        List<EffectProfile> profiles = new ArrayList<>();
+        int npcCount = 0;
+        int size = HEADER_BYTES + 8;
+
+        for (NPCData npcData : npcs) {
+            World world = npcData.getLocation().getWorld();
+            if (world == null) {
+                continue;
+            }
+            if (!worldIndex.containsKey(world.getName())) {
+                worldIndex.put(world.getName(), worldNames.size());
+                worldNames.add(world.getName());
+                size += 2 + utf8(world.getName()).length;
+            }
+            EffectProfile profile = npcData.getProfile();
+            if (!profileIndex.containsKey(profile)) {
+                profileIndex.put(profile, profiles.size());
+                profiles.add(profile);
+                size += 6 + utf8(profile.getParticleType().name()).length + utf8(profile.getShape().name()).length
+                        + utf8(profile.getTargetMode().name()).length + 44;
+            }
+            npcCount++;
+            size += NPC_BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(registryRevision)
+                .putInt(worldNames.size()).putInt(profiles.size()).putInt(npcCount);
+        for (String worldName : worldNames) {
+            writeString(buffer, worldName);
+        }
+        for (EffectProfile profile : profiles) {
+            writeString(buffer, profile.getParticleType().name());
+            writeString(buffer, profile.getShape().name());
+            writeString(buffer, profile.getTargetMode().name());
+            buffer.putInt(profile.getDensity()).putDouble(profile.getSpeed()).putInt(profile.getDuration())
+                    .putDouble(profile.getRadius()).putDouble(profile.getHeight()).putInt(profile.getRotations())
+                    .putDouble(profile.getAnimationSpeed());
+        }
+        for (NPCData npcData : npcs) {
+            Location location = npcData.getLocation();
+            World world = location.getWorld();
+            if (world == null) {
+                continue;
+            }
+            buffer.putLong(npcData.getNpcUuid().getMostSignificantBits())
+                    .putLong(npcData.getNpcUuid().getLeastSignificantBits())
+                    .putInt(worldIndex.get(world.getName()))
+                    .putInt(profileIndex.get(npcData.getProfile()))
+                    .putDouble(location.getX()).putDouble(location.getY()).putDouble(location.getZ());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+
+        // Write to a temporary file first so a crash never leaves a half-written snapshot behind
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = utf8(value);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String readString(ByteBuffer reader) {
+        int length = reader.getShort() & 0xffff;
+        byte[] bytes = new byte[length];
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,40 +1,104 @@
 package me.jack.dynamicNPCInteractionParticleEmissionMechanism.database;
 
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectProfile;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * SQLite storage with one write connection and a small pool of read-only connections.
+ * The write connection is used by {@link #initialize()} and afterwards only by the
+ * write-behind thread, which makes that thread its owner. Queries run on dedicated reader
+ * threads, each holding one read-only connection. With WAL journaling, readers see the last
+ * committed state and are never blocked by a batch being written.
+ */
 public class SQLiteManager extends DatabaseManager {
-    private final JavaPlugin plugin;
-    private Connection connection;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+    private static final String SAVE_SQL = "INSERT OR REPLACE INTO npc_particles " +
+            "(npc_uuid, world_name, x, y, z, particle_type, shape, target_mode, " +
+            "density, speed, duration, radius, height, rotations, animation_speed, chunk_x, chunk_z) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String REMOVE_SQL = "DELETE FROM npc_particles WHERE npc_uuid = ?";
+
+    /**
+     * Connection settings from the database.sqlite section of the config
+     *
+     * @param synchronous OFF, NORMAL or FULL
+     */
+    public record Settings(boolean wal, String synchronous, int readerConnections, int cacheSizeKb, int mmapSizeMb) {
+        public static Settings from(ConfigManager configManager) {
+            return new Settings(configManager.isSQLiteWalEnabled(), configManager.getSQLiteSynchronous(),
+                    configManager.getSQLiteReaderConnections(), configManager.getSQLiteCacheSizeKb(),
+                    configManager.getSQLiteMmapSizeMb());
+        }
+    }
+
+    private final Logger logger;
     private final File databaseFile;
+    private final Settings settings;
+    private final int readerCount;
+    private final ExecutorService readExecutor;
+    private final BlockingQueue<CachedConnection> readers = new LinkedBlockingQueue<>();
+    private CachedConnection writer;
+
+    public SQLiteManager(JavaPlugin plugin, ConfigManager configManager) {
+        this(plugin.getLogger(), new File(plugin.getDataFolder(), "npcs.db"), configManager.getWriteBatchSize(),
+                configManager.getWriteMaxDelayMillis(), Settings.from(configManager));
+    }
 
-    public SQLiteManager(JavaPlugin plugin) {
-        this.plugin = plugin;
-        this.databaseFile = new File(plugin.getDataFolder(), "npcs.db");
+    public SQLiteManager(Logger logger, File databaseFile, int writeBatchSize, long writeMaxDelayMillis,
+                         Settings settings) {
+        super(logger, writeBatchSize, writeMaxDelayMillis);
+        this.logger = logger;
+        this.databaseFile = databaseFile;
+        this.settings = settings;
+        this.readerCount = Math.max(1, settings.readerConnections());
+        AtomicInteger threadId = new AtomicInteger();
+        this.readExecutor = Executors.newFixedThreadPool(readerCount, runnable -> {
+            Thread thread = new Thread(runnable, "DNIPEM-SQLite-Reader-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
     public CompletableFuture<Void> initialize() {
         return CompletableFuture.runAsync(() -> {
             try {
-                if (!plugin.getDataFolder().exists()) {
-                    plugin.getDataFolder().mkdirs();
+                File folder = databaseFile.getAbsoluteFile().getParentFile();
+                if (!folder.exists()) {
+                    folder.mkdirs();
                 }
 
                 Class.forName("org.sqlite.JDBC");
-                connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+                writer = new CachedConnection(openConnection(false));
+                Connection connection = writer.getConnection();
 
                 String createTable = "CREATE TABLE IF NOT EXISTS npc_particles (" +
                         "id INTEGER PRIMARY KEY AUTOINCREMENT," +
@@ -53,122 +117,293 @@ public class SQLiteManager extends DatabaseManager {
                         "height DOUBLE NOT NULL," +
                         "rotations INT NOT NULL," +
                         "animation_speed DOUBLE NOT NULL," +
+                        "chunk_x INT," +
+                        "chunk_z INT," +
                         "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
                         ")";
 
                 try (Statement stmt = connection.createStatement()) {
                     stmt.execute(createTable);
                 }
+                migrateChunkColumns(connection, logger);
 
-                plugin.getLogger().info("SQLite database initialized successfully");
+                // Triggers keep the registry revision current, whoever changes the table
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("CREATE TABLE IF NOT EXISTS npc_registry_revision (" +
+                            "id INTEGER PRIMARY KEY," +
+                            "revision BIGINT NOT NULL" +
+                            ")");
+                    stmt.execute("INSERT OR IGNORE INTO npc_registry_revision (id, revision) VALUES (1, "
+                            + ThreadLocalRandom.current().nextLong(1L << 48) + ")");
+                    for (String event : new String[]{"INSERT", "UPDATE", "DELETE"}) {
+                        stmt.execute("CREATE TRIGGER IF NOT EXISTS npc_particles_revision_" + event.toLowerCase() +
+                                " AFTER " + event + " ON npc_particles BEGIN " +
+                                "UPDATE npc_registry_revision SET revision = revision + 1 WHERE id = 1; END");
+                    }
+                }
+
+                // Readers are opened last: a read-only connection needs the tables, and the WAL files, to exist
+                for (int i = 0; i < readerCount; i++) {
+                    readers.add(new CachedConnection(openConnection(true)));
+                }
+
+                logger.info("SQLite database initialized successfully ("
+                        + journalMode(connection) + " journal, " + readerCount + " read connections)");
             } catch (Exception e) {
-                plugin.getLogger().severe("Failed to initialize SQLite database: " + e.getMessage());
+                logger.severe("Failed to initialize SQLite database: " + e.getMessage());
                 e.printStackTrace();
             }
         });
     }
 
+    /**
+     * Open a connection with the configured pragmas. Read-only connections are opened with
+     * SQLITE_OPEN_READONLY, so SQLite itself rejects writes on them. The journal mode is stored
+     * in the database file, so only the write connection sets it.
+     */
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(readOnly);
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        // A negative cache_size is in KiB rather than pages
+        config.setCacheSize(-settings.cacheSizeKb());
+        if (!readOnly) {
+            config.setJournalMode(settings.wal() ? SQLiteConfig.JournalMode.WAL : SQLiteConfig.JournalMode.DELETE);
+            config.setSynchronous(synchronousMode());
+            config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        }
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath(),
+                config.toProperties());
+
+        try (Statement stmt = connection.createStatement()) {
+            // SQLiteConfig has no setting for the memory map
+            stmt.execute("PRAGMA mmap_size = " + settings.mmapSizeMb() * 1024L * 1024L);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * The configured synchronous level, in any case; NORMAL if it is not one SQLite knows
+     */
+    private SQLiteConfig.SynchronousMode synchronousMode() {
+        String level = settings.synchronous() != null ? settings.synchronous().toUpperCase(Locale.ROOT) : "NORMAL";
+        try {
+            return SQLiteConfig.SynchronousMode.valueOf(level);
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid SQLite synchronous level: " + settings.synchronous() + ", using NORMAL");
+            return SQLiteConfig.SynchronousMode.NORMAL;
+        }
+    }
+
+    private String journalMode(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+            return rs.next() ? rs.getString(1).toUpperCase() : "UNKNOWN";
+        }
+    }
+
+    /**
+     * Run a query on a reader thread with that thread's read-only connection. There is one
+     * connection per reader thread, so one is always free when a query starts.
+     */
+    private <T> CompletableFuture<T> read(Function<CachedConnection, T> query) {
+        return CompletableFuture.supplyAsync(() -> {
+            CachedConnection reader = readers.poll();
+            if (reader == null) {
+                throw new IllegalStateException("SQLite database is not open");
+            }
+            try {
+                return query.apply(reader);
+            } finally {
+                readers.add(reader);
+            }
+        }, readExecutor);
+    }
+
     @Override
     public CompletableFuture<Void> close() {
         return CompletableFuture.runAsync(() -> {
             try {
-                if (connection != null && !connection.isClosed()) {
-                    connection.close();
-                    plugin.getLogger().info("SQLite database connection closed");
+                readExecutor.shutdown();
+                if (!readExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.warning("SQLite queries still running at shutdown");
+                }
+                CachedConnection reader;
+                while ((reader = readers.poll()) != null) {
+                    reader.close();
+                }
+                // Closing the last connection checkpoints the WAL back into the database file
+                if (writer != null && !writer.getConnection().isClosed()) {
+                    writer.close();
+                    logger.info("SQLite database connection closed");
                 }
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to close SQLite database: " + e.getMessage());
+                logger.severe("Failed to close SQLite database: " + e.getMessage());
                 e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         });
     }
 
     @Override
-    public CompletableFuture<Void> saveNPC(NPCData npcData) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "INSERT OR REPLACE INTO npc_particles " +
-                    "(npc_uuid, world_name, x, y, z, particle_type, shape, target_mode, " +
-                    "density, speed, duration, radius, height, rotations, animation_speed) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setString(1, npcData.getNpcUuid().toString());
-                stmt.setString(2, npcData.getLocation().getWorld().getName());
-                stmt.setDouble(3, npcData.getLocation().getX());
-                stmt.setDouble(4, npcData.getLocation().getY());
-                stmt.setDouble(5, npcData.getLocation().getZ());
-                stmt.setString(6, npcData.getParticleType().name());
-                stmt.setString(7, npcData.getShape().name());
-                stmt.setString(8, npcData.getTargetMode().name());
-                stmt.setInt(9, npcData.getDensity());
-                stmt.setDouble(10, npcData.getSpeed());
-                stmt.setInt(11, npcData.getDuration());
-                stmt.setDouble(12, npcData.getRadius());
-                stmt.setDouble(13, npcData.getHeight());
-                stmt.setInt(14, npcData.getRotations());
-                stmt.setDouble(15, npcData.getAnimationSpeed());
-
-                stmt.executeUpdate();
+    protected void writeBatch(List<NPCData> saves, List<UUID> removals) throws SQLException {
+        Connection connection = writer.getConnection();
+        PreparedStatement save = writer.prepare(SAVE_SQL);
+        PreparedStatement remove = writer.prepare(REMOVE_SQL);
+
+        // One transaction per batch, so SQLite syncs the journal once instead of once per NPC
+        connection.setAutoCommit(false);
+        try {
+            for (NPCData npcData : saves) {
+                bindNPC(save, npcData);
+                save.addBatch();
+            }
+            for (UUID npcUuid : removals) {
+                remove.setString(1, npcUuid.toString());
+                remove.addBatch();
+            }
+            if (!saves.isEmpty()) {
+                save.executeBatch();
+            }
+            if (!removals.isEmpty()) {
+                remove.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            // The statements are reused, so nothing of this batch may be left on them
+            save.clearBatch();
+            remove.clearBatch();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public CompletableFuture<NPCData> getNPC(UUID npcUuid) {
+        return read(reader -> {
+            String sql = "SELECT * FROM npc_particles WHERE npc_uuid = ?";
+
+            try {
+                PreparedStatement stmt = reader.prepare(sql);
+                stmt.setString(1, npcUuid.toString());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return extractNPCData(rs);
+                    }
+                }
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to save NPC to database: " + e.getMessage());
+                logger.severe("Failed to get NPC from database: " + e.getMessage());
                 e.printStackTrace();
             }
+
+            return null;
         });
     }
 
     @Override
-    public CompletableFuture<Void> removeNPC(UUID npcUuid) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "DELETE FROM npc_particles WHERE npc_uuid = ?";
+    public CompletableFuture<List<NPCData>> getAllNPCs() {
+        return read(reader -> {
+            List<NPCData> npcs = new ArrayList<>();
+            String sql = "SELECT * FROM npc_particles";
 
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setString(1, npcUuid.toString());
-                stmt.executeUpdate();
+            try (ResultSet rs = reader.prepare(sql).executeQuery()) {
+                while (rs.next()) {
+                    NPCData npcData = extractNPCData(rs);
+                    if (npcData != null) {
+                        npcs.add(npcData);
+                    }
+                }
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to remove NPC from database: " + e.getMessage());
+                logger.severe("Failed to get all NPCs from database: " + e.getMessage());
                 e.printStackTrace();
             }
+
+            return npcs;
         });
     }
 
     @Override
-    public CompletableFuture<NPCData> getNPC(UUID npcUuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "SELECT * FROM npc_particles WHERE npc_uuid = ?";
+    public CompletableFuture<Long> streamAllNPCs(int batchSize, Consumer<List<NPCData>> consumer) {
+        return read(reader -> {
+            List<NPCData> batch = new ArrayList<>(batchSize);
+            long count = 0;
+            String sql = "SELECT * FROM npc_particles";
 
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setString(1, npcUuid.toString());
-                ResultSet rs = stmt.executeQuery();
+            try {
+                PreparedStatement stmt = reader.prepare(sql);
+                stmt.setFetchSize(batchSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        NPCData npcData = extractNPCData(rs);
+                        if (npcData == null) {
+                            continue;
+                        }
+                        batch.add(npcData);
+                        count++;
+                        if (batch.size() >= batchSize) {
+                            consumer.accept(batch);
+                            batch.clear();
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    consumer.accept(batch);
+                }
+            } catch (SQLException e) {
+                logger.severe("Failed to stream NPCs from database: " + e.getMessage());
+                // Fail rather than return a partial count, so callers never mistake it for the whole table
+                throw new CompletionException(e);
+            }
 
+            return count;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> countNPCs() {
+        return read(reader -> {
+            try (ResultSet rs = reader.prepare("SELECT COUNT(*) FROM npc_particles").executeQuery()) {
                 if (rs.next()) {
-                    return extractNPCData(rs);
+                    return rs.getLong(1);
                 }
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to get NPC from database: " + e.getMessage());
+                logger.severe("Failed to count NPCs: " + e.getMessage());
                 e.printStackTrace();
             }
 
-            return null;
+            return 0L;
         });
     }
 
     @Override
-    public CompletableFuture<List<NPCData>> getAllNPCs() {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<List<NPCData>> getNPCsInChunks(String worldName, long[] chunkKeys) {
+        return read(reader -> {
             List<NPCData> npcs = new ArrayList<>();
-            String sql = "SELECT * FROM npc_particles";
-
-            try (Statement stmt = connection.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
+            String sql = "SELECT * FROM npc_particles WHERE world_name = ? AND chunk_x = ? AND chunk_z = ?";
 
-                while (rs.next()) {
-                    NPCData npcData = extractNPCData(rs);
-                    if (npcData != null) {
-                        npcs.add(npcData);
+            try {
+                PreparedStatement stmt = reader.prepare(sql);
+                stmt.setString(1, worldName);
+                for (long chunkKey : chunkKeys) {
+                    stmt.setInt(2, (int) chunkKey);
+                    stmt.setInt(3, (int) (chunkKey >>> 32));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            NPCData npcData = extractNPCData(rs);
+                            if (npcData != null) {
+                                npcs.add(npcData);
+                            }
+                        }
                     }
                 }
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to get all NPCs from database: " + e.getMessage());
+                logger.severe("Failed to get NPCs in chunks from database: " + e.getMessage());
                 e.printStackTrace();
             }
 
@@ -176,20 +411,60 @@ public class SQLiteManager extends DatabaseManager {
         });
     }
 
+    @Override
+    public CompletableFuture<long[]> getNPCChunks(String worldName) {
+        return read(reader -> {
+            List<Long> chunkKeys = new ArrayList<>();
+            String sql = "SELECT DISTINCT chunk_x, chunk_z FROM npc_particles WHERE world_name = ?";
+
+            try {
+                PreparedStatement stmt = reader.prepare(sql);
+                stmt.setString(1, worldName);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        chunkKeys.add((rs.getInt(1) & 0xffffffffL) | ((rs.getInt(2) & 0xffffffffL) << 32));
+                    }
+                }
+            } catch (SQLException e) {
+                logger.severe("Failed to get NPC chunks from database: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            return chunkKeys.stream().mapToLong(Long::longValue).toArray();
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> getRegistryRevision() {
+        return read(reader -> {
+            try (ResultSet rs = reader.prepare("SELECT revision FROM npc_registry_revision WHERE id = 1").executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1);
+                }
+            } catch (SQLException e) {
+                logger.severe("Failed to read registry revision: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            return -1L;
+        });
+    }
+
     @Override
     public CompletableFuture<Boolean> npcExists(UUID npcUuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return read(reader -> {
             String sql = "SELECT COUNT(*) FROM npc_particles WHERE npc_uuid = ?";
 
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            try {
+                PreparedStatement stmt = reader.prepare(sql);
                 stmt.setString(1, npcUuid.toString());
-                ResultSet rs = stmt.executeQuery();
-
-                if (rs.next()) {
-                    return rs.getInt(1) > 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getInt(1) > 0;
+                    }
                 }
             } catch (SQLException e) {
-                plugin.getLogger().severe("Failed to check if NPC exists: " + e.getMessage());
+                logger.severe("Failed to check if NPC exists: " + e.getMessage());
                 e.printStackTrace();
             }
 
@@ -202,7 +477,7 @@ public class SQLiteManager extends DatabaseManager {
         String worldName = rs.getString("world_name");
 
         if (Bukkit.getWorld(worldName) == null) {
-            plugin.getLogger().warning("World " + worldName + " not found for NPC " + npcUuid);
+            logger.warning("World " + worldName + " not found for NPC " + npcUuid);
             return null;
         }
 
@@ -217,9 +492,7 @@ public class SQLiteManager extends DatabaseManager {
         ParticleShape shape = ParticleShape.valueOf(rs.getString("shape"));
         TargetMode targetMode = TargetMode.valueOf(rs.getString("target_mode"));
 
-        return new NPCData(
-                npcUuid,
-                location,
+        return new NPCData(npcUuid, location, EffectProfile.of(
                 particleType,
                 shape,
                 targetMode,
@@ -230,6 +503,6 @@ public class SQLiteManager extends DatabaseManager {
                 rs.getDouble("height"),
                 rs.getInt("rotations"),
                 rs.getDouble("animation_speed")
-        );
+        ));
     }
 }
@@ -0,0 +1,322 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.database;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects NPC saves and removals and writes them in batches on one background thread.
+ * Writes to the same NPC are coalesced while they wait: the last save wins and a removal
+ * replaces any pending save. Every call still gets its own future and commit callback; once
+ * the NPC's final state is committed they run in call order, so callers replaying their changes
+ * end up in the state the database holds. If the batch fails, none of them run.
+ * A batch is written once maxBatchSize writes are waiting or the oldest has waited
+ * maxDelayMillis, whichever comes first.
+ */
+public class WriteBehindQueue {
+    /**
+     * Writes one batch of coalesced changes in a single transaction
+     */
+    public interface BatchWriter {
+        void write(List<NPCData> saves, List<UUID> removals) throws Exception;
+    }
+
+    private final BatchWriter writer;
+    private final Logger logger;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService executor;
+    private final Map<UUID, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private boolean closed;
+    // Set when shutdown stops waiting for the drain
+    private volatile boolean abandoned;
+
+    // Metrics; coalescedWrites is written under the lock, the rest by the writer thread only
+    private volatile long coalescedWrites;
+    private volatile long flushedWrites;
+    private volatile long batchedWrites;
+    private volatile long batches;
+    private volatile int lastBatchSize;
+    private volatile int largestBatchSize;
+    private volatile long lastFlushNanos;
+    private volatile long totalFlushNanos;
+    private volatile long failedBatches;
+
+    public WriteBehindQueue(BatchWriter writer, Logger logger, int maxBatchSize, long maxDelayMillis) {
+        this.writer = writer;
+        this.logger = logger;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayMillis = Math.max(0, maxDelayMillis);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DNIPEM-Write-Behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a save; completes once it, or a later write to the same NPC, is committed.
+     * onCommit, if not null, runs on the writer thread just before the future completes.
+     */
+    public CompletableFuture<Void> save(NPCData npcData, Runnable onCommit) {
+        return enqueue(npcData.getNpcUuid(), npcData, onCommit);
+    }
+
+    /**
+     * Queue a removal, cancelling any save still waiting for the same NPC
+     */
+    public CompletableFuture<Void> remove(UUID npcUuid, Runnable onCommit) {
+        return enqueue(npcUuid, null, onCommit);
+    }
+
+    private CompletableFuture<Void> enqueue(UUID npcUuid, NPCData npcData, Runnable onCommit) {
+        synchronized (pending) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Write queue is closed"));
+            }
+
+            PendingWrite write = pending.get(npcUuid);
+            if (write == null) {
+                write = new PendingWrite(npcUuid);
+                pending.put(npcUuid, write);
+            } else {
+                coalescedWrites++;
+            }
+            write.npcData = npcData;
+            Waiter waiter = new Waiter(onCommit);
+            write.waiters.add(waiter);
+
+            if (pending.size() == maxBatchSize) {
+                executor.execute(this::flush);
+            } else if (!flushScheduled) {
+                executor.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+            flushScheduled = true;
+            return waiter.future;
+        }
+    }
+
+    /**
+     * Write one batch; runs on the writer thread
+     */
+    private void flush() {
+        List<PendingWrite> batch = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<PendingWrite> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < maxBatchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            flushScheduled = !pending.isEmpty();
+            if (flushScheduled && !closed) {
+                // More than a batch is waiting; keep going without the delay. Once closed, the
+                // drain loop writes the rest and the executor may already be shutting down.
+                executor.execute(this::flush);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<NPCData> saves = new ArrayList<>();
+        List<UUID> removals = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.npcData != null) {
+                saves.add(write.npcData);
+            } else {
+                removals.add(write.npcUuid);
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        Exception failure = null;
+        try {
+            writer.write(saves, removals);
+        } catch (Exception e) {
+            failure = e;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+
+        batches++;
+        batchedWrites += batch.size();
+        lastBatchSize = batch.size();
+        largestBatchSize = Math.max(largestBatchSize, batch.size());
+        lastFlushNanos = elapsed;
+        totalFlushNanos += elapsed;
+        if (failure != null) {
+            failedBatches++;
+            logger.log(Level.SEVERE, "Failed to write " + batch.size() + " NPC changes to the database", failure);
+            for (PendingWrite write : batch) {
+                write.fail(failure);
+            }
+            return;
+        }
+
+        flushedWrites += batch.size();
+        for (PendingWrite write : batch) {
+            for (Waiter waiter : write.waiters) {
+                if (waiter.onCommit != null) {
+                    try {
+                        waiter.onCommit.run();
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "Commit callback failed for NPC " + write.npcUuid, e);
+                    }
+                }
+                waiter.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Stop accepting writes and write everything still queued, waiting at most the timeout
+     *
+     * @return false if writes were still queued when the timeout ran out
+     */
+    public boolean drain(long timeoutMillis) {
+        synchronized (pending) {
+            closed = true;
+        }
+
+        Future<?> drainTask;
+        try {
+            drainTask = executor.submit(() -> {
+                try {
+                    while (!abandoned && getDepth() > 0) {
+                        flush();
+                    }
+                } finally {
+                    // The executor is shut down from its own thread, so no flush is cut off halfway
+                    failRemaining();
+                    executor.shutdown();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failRemaining();
+            return false;
+        }
+
+        try {
+            drainTask.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            abandoned = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The batch in flight still finishes; everything behind it is failed
+            abandoned = true;
+            logger.warning("Write queue not drained, " + getDepth() + " NPC changes were not written: " + e);
+        }
+        return false;
+    }
+
+    private void failRemaining() {
+        List<PendingWrite> remaining;
+        synchronized (pending) {
+            remaining = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        IllegalStateException failure = new IllegalStateException("Write queue closed before the change was written");
+        for (PendingWrite write : remaining) {
+            write.fail(failure);
+        }
+    }
+
+    /**
+     * Get the number of NPCs with a write waiting
+     */
+    public int getDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Get the number of writes merged into one already waiting for the same NPC
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites;
+    }
+
+    /**
+     * Get the number of writes committed to the database
+     */
+    public long getFlushedWrites() {
+        return flushedWrites;
+    }
+
+    public long getBatchCount() {
+        return batches;
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getLargestBatchSize() {
+        return largestBatchSize;
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches;
+        return count > 0 ? (double) batchedWrites / count : 0.0;
+    }
+
+    /**
+     * Get how long writing the last batch took
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    public double getAverageFlushNanos() {
+        long count = batches;
+        return count > 0 ? (double) totalFlushNanos / count : 0.0;
+    }
+
+    private static final class PendingWrite {
+        private final UUID npcUuid;
+        // Every call merged into this write, in call order
+        private final List<Waiter> waiters = new ArrayList<>(1);
+        // Null for a removal
+        private NPCData npcData;
+
+        private PendingWrite(UUID npcUuid) {
+            this.npcUuid = npcUuid;
+        }
+
+        private void fail(Throwable failure) {
+            for (Waiter waiter : waiters) {
+                waiter.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Runnable onCommit;
+
+        private Waiter(Runnable onCommit) {
+            this.onCommit = onCommit;
+        }
+    }
+}
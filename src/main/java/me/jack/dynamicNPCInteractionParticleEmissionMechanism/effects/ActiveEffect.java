@@ -0,0 +1,320 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.SplittableRandom;
+
+public class ActiveEffect {
+    private static final long LOOP_PHASE_RANGE = 1L << 30;
+
+    private final NPCData npcData;
+    private final Location center;
+    private final World world;
+    private final double centerX;
+    private final double centerY;
+    private final double centerZ;
+    private final int sectionX;
+    private final int sectionY;
+    private final int sectionZ;
+    private final ShapeGenerator generator;
+    private final ShapeGeometry geometry;
+    private final SplittableRandom random;
+    private final FrameCache.Profile frameProfile;
+    private ParticleFrame frame;
+    private ParticleFrame backFrame;
+    private ParticleFrame current;
+    private ParticleFrame prepared;
+    private final ViewerSet viewers;
+    private int ticks;
+    private volatile int endTick;
+    private volatile boolean cancelled;
+    private double demand;
+    private double emitCarry;
+    private int slices = 1;
+    private double sectionFactor = 1.0;
+    // 0 when the animation never repeats exactly, so its tick is never wrapped
+    private final int animationPeriod;
+    private int sliceCursor;
+    private int pendingTick;
+    private int preparedTick;
+
+    public ActiveEffect(NPCData npcData, Location center, ShapeGenerator generator, ShapeGeometry geometry,
+                        SplittableRandom random, FrameCache.Profile frameProfile) {
+        this.npcData = npcData;
+        this.center = center;
+        this.world = center.getWorld();
+        this.centerX = center.getX();
+        this.centerY = center.getY();
+        this.centerZ = center.getZ();
+        this.sectionX = (int) Math.floor(centerX) >> 4;
+        this.sectionY = (int) Math.floor(centerY) >> 4;
+        this.sectionZ = (int) Math.floor(centerZ) >> 4;
+        this.generator = generator;
+        this.geometry = geometry;
+        this.random = random;
+        this.frameProfile = frameProfile;
+        this.frame = new ParticleFrame(npcData.getDensity());
+        this.backFrame = new ParticleFrame(npcData.getDensity());
+        this.current = frame;
+        this.preparedTick = -1;
+        this.viewers = new ViewerSet();
+        this.ticks = 0;
+        this.endTick = npcData.getDuration();
+        this.animationPeriod = Math.max(0, generator.animationPeriod(npcData));
+    }
+
+    public NPCData getNpcData() {
+        return npcData;
+    }
+
+    public Location getCenter() {
+        return center;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public double getCenterZ() {
+        return centerZ;
+    }
+
+    /**
+     * Chunk section coordinates of the effect's center
+     */
+    public int getSectionX() {
+        return sectionX;
+    }
+
+    public int getSectionY() {
+        return sectionY;
+    }
+
+    public int getSectionZ() {
+        return sectionZ;
+    }
+
+    /**
+     * Generator that produces this effect's points
+     */
+    public ShapeGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Precomputed geometry for this effect, or null for shapes generated per tick
+     */
+    public ShapeGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Random source owned by this effect; only used by whichever thread is building its frame
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Shared frames for this effect's profile, or null if its frames are not cached
+     */
+    public FrameCache.Profile getFrameProfile() {
+        return frameProfile;
+    }
+
+    /**
+     * Frame holding the points for the current tick; either this effect's own buffer or a
+     * shared cached frame, so it must not be modified
+     */
+    public ParticleFrame getFrame() {
+        return current;
+    }
+
+    public void setFrame(ParticleFrame current) {
+        this.current = current;
+    }
+
+    /**
+     * This effect's own reusable buffer for building the current tick's points
+     */
+    public ParticleFrame getBuffer() {
+        return frame;
+    }
+
+    /**
+     * Second buffer written by background frame generation while the front frame is in use
+     */
+    public ParticleFrame getBackFrame() {
+        return backFrame;
+    }
+
+    /**
+     * Animation tick queued for background generation
+     */
+    public int getPendingTick() {
+        return pendingTick;
+    }
+
+    public void setPendingTick(int pendingTick) {
+        this.pendingTick = pendingTick;
+    }
+
+    /**
+     * Record that the given frame, either the back frame or a shared one, now holds the given animation tick
+     */
+    public void markPrepared(int tick, ParticleFrame prepared) {
+        this.prepared = prepared;
+        this.preparedTick = tick;
+    }
+
+    /**
+     * Make the prepared frame current if it was prepared for the given animation tick,
+     * swapping buffers when it was built into the back frame
+     *
+     * @return true if the current frame now holds that tick
+     */
+    public boolean swapIfPrepared(int tick) {
+        if (preparedTick != tick) {
+            return false;
+        }
+
+        if (prepared == backFrame) {
+            backFrame = frame;
+            frame = prepared;
+        }
+        current = prepared;
+        prepared = null;
+        preparedTick = -1;
+        return true;
+    }
+
+    /**
+     * Players that can see this effect during the current tick
+     */
+    public ViewerSet getViewers() {
+        return viewers;
+    }
+
+    /**
+     * Particles this effect wants to send during the current tick, before budget thinning
+     */
+    public double getDemand() {
+        return demand;
+    }
+
+    public void setDemand(double demand) {
+        this.demand = demand;
+    }
+
+    /**
+     * Fractional particle left over from the last thinned emission, carried so that
+     * heavily thinned effects still show up over consecutive ticks instead of vanishing
+     */
+    public double getEmitCarry() {
+        return emitCarry;
+    }
+
+    public void setEmitCarry(double emitCarry) {
+        this.emitCarry = emitCarry;
+    }
+
+    /**
+     * Fraction of this effect's particles kept this tick by its chunk section's density cap
+     */
+    public double getSectionFactor() {
+        return sectionFactor;
+    }
+
+    public void setSectionFactor(double sectionFactor) {
+        this.sectionFactor = sectionFactor;
+    }
+
+    /**
+     * Number of ticks each frame's points are spread over; 1 sends the whole frame every tick
+     */
+    public int getSlices() {
+        return slices;
+    }
+
+    public void setSlices(int slices) {
+        this.slices = slices;
+    }
+
+    /**
+     * Offset of the slice to send this tick; rotates so every point is sent once per slices ticks
+     */
+    public int nextSlice() {
+        int slice = sliceCursor % slices;
+        sliceCursor = slice + 1;
+        return slice;
+    }
+
+    /**
+     * Number of ticks this effect has been stepped so far
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Tick within the effect's animation cycle. It wraps at the generator's animation period, which
+     * for rotating shapes is a whole number of turns, and keeps counting for shapes that never
+     * repeat exactly, so extended and looping effects keep turning at their configured speed.
+     */
+    public int getAnimationTick() {
+        return animationPeriod > 0 ? ticks % animationPeriod : ticks;
+    }
+
+    /**
+     * Advance the effect by one tick
+     */
+    public void advance() {
+        ticks++;
+    }
+
+    /**
+     * Check if the effect has run for its full duration
+     */
+    public boolean isFinished() {
+        return cancelled || ticks >= endTick;
+    }
+
+    /**
+     * Push the end of the effect out to a full duration from now
+     */
+    public void extend() {
+        endTick = ticks + npcData.getDuration();
+    }
+
+    /**
+     * Run the effect until cancelled, starting at the given tick wrapped to its animation cycle.
+     * Animations without a cycle keep the phase within LOOP_PHASE_RANGE, leaving room for the
+     * tick to run for years before it would overflow.
+     */
+    public void loopFrom(long animationTick) {
+        ticks = (int) Math.floorMod(animationTick, animationPeriod > 0 ? animationPeriod : LOOP_PHASE_RANGE);
+        endTick = Integer.MAX_VALUE;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stop the effect; it is retired on the next engine tick
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+}
@@ -0,0 +1,166 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the next tick's frames for a batch of effects on a fork/join pool while the
+ * server finishes the current tick. Each effect is written into its back buffer, so the
+ * main thread only has to swap buffers and send packets on the following tick.
+ * All methods except the workers themselves must be called from the engine's thread.
+ */
+public class AsyncFrameGenerator {
+    private static final int SLICE_POINTS = 4096;
+
+    /**
+     * Produces the points of an effect for one animation tick; must be thread-safe.
+     * Returns the frame holding the points: the given buffer, or a shared cached frame.
+     */
+    @FunctionalInterface
+    public interface FrameBuilder {
+        ParticleFrame build(ActiveEffect effect, int tick, ParticleFrame buffer);
+    }
+
+    private final FrameBuilder builder;
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private ActiveEffect[] batch = new ActiveEffect[64];
+    private int batchSize;
+    private ForkJoinTask<?> pending;
+    private long lastWaitNanos;
+
+    public AsyncFrameGenerator(FrameBuilder builder, int threads) {
+        this(builder, createPool(threads), true);
+    }
+
+    /**
+     * Generate on a pool shared with other engines; the pool is left running on shutdown
+     */
+    public AsyncFrameGenerator(FrameBuilder builder, ForkJoinPool sharedPool) {
+        this(builder, sharedPool, false);
+    }
+
+    private AsyncFrameGenerator(FrameBuilder builder, ForkJoinPool pool, boolean ownsPool) {
+        this.builder = builder;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * Create a daemon worker pool for frame generation
+     */
+    public static ForkJoinPool createPool(int threads) {
+        return new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("DNIPEM-Frame-Generator-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Queue an effect to have its current animation tick built in the background
+     */
+    public void add(ActiveEffect effect) {
+        if (batchSize == batch.length) {
+            batch = Arrays.copyOf(batch, batchSize * 2);
+        }
+        effect.setPendingTick(effect.getAnimationTick());
+        batch[batchSize++] = effect;
+    }
+
+    /**
+     * Start building every queued effect
+     */
+    public void submit() {
+        if (batchSize == 0 || pending != null) {
+            return;
+        }
+        pending = pool.submit(new Slice(batch, 0, batchSize));
+    }
+
+    /**
+     * Wait for the previous batch to finish; afterwards the main thread may read its back buffers
+     */
+    public void await() {
+        if (pending == null) {
+            lastWaitNanos = 0;
+            return;
+        }
+
+        long start = System.nanoTime();
+        pending.join();
+        lastWaitNanos = System.nanoTime() - start;
+        pending = null;
+        Arrays.fill(batch, 0, batchSize, null);
+        batchSize = 0;
+    }
+
+    /**
+     * Time the engine spent blocked on the previous batch during the last tick
+     */
+    public long getLastWaitNanos() {
+        return lastWaitNanos;
+    }
+
+    public void shutdown() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        Arrays.fill(batch, 0, batchSize, null);
+        batchSize = 0;
+        if (!ownsPool) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Slice extends RecursiveAction {
+        private final ActiveEffect[] effects;
+        private final int from;
+        private final int to;
+
+        private Slice(ActiveEffect[] effects, int from, int to) {
+            this.effects = effects;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && estimatePoints() > SLICE_POINTS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Slice(effects, from, middle), new Slice(effects, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                ActiveEffect effect = effects[i];
+                int tick = effect.getPendingTick();
+                try {
+                    effect.markPrepared(tick, builder.build(effect, tick, effect.getBackFrame()));
+                } catch (RuntimeException e) {
+                    // Left unprepared; the engine rebuilds it on the main thread and reports the failure
+                }
+            }
+        }
+
+        private long estimatePoints() {
+            long points = 0;
+            for (int i = from; i < to; i++) {
+                points += effects[i].getFrame().size();
+            }
+            return points;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import org.bukkit.Particle;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Steps every active effect once per call: retires finished effects, resolves viewers,
+ * builds frames, fits them to the global budget and hands the particles to a sink.
+ * Has no dependency on the scheduler or server, so it can be driven directly.
+ * All methods must be called from the thread that drives the engine.
+ */
+public class EffectEngine {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final double STEP_TIME_SMOOTHING = 0.05;
+
+    private final Logger logger;
+    private final ViewerResolver viewerResolver;
+    private final ParticleBudget particleBudget;
+    private final ParticleSink sink;
+    private final AsyncFrameGenerator frameGenerator;
+    private final FrameCache frameCache;
+    private final EmissionSlicer slicer;
+    private final SectionDensityCap sectionCap;
+    private final Consumer<ActiveEffect> retireListener;
+    private ActiveEffect[] activeEffects;
+    private int activeCount;
+    private long lastStepNanos;
+    private double averageStepNanos;
+    private int lastParticlesSent;
+    private int lastParticlesShed;
+    private long totalParticlesShed;
+    private int lastUnviewedEffects;
+    private int lastPreparedFrames;
+
+    /**
+     * @param frameCache shared frames for deterministic profiles, or null to always build per effect
+     * @param slicer spreads dense frames over several ticks, or null to always send whole frames
+     * @param sectionCap limits particles per chunk section, or null for no local limit
+     * @param generationThreads worker threads for background frame generation, or 0 to build frames inline
+     * @param retireListener called for every effect removed from the engine
+     */
+    public EffectEngine(Logger logger, ViewerResolver viewerResolver, ParticleBudget particleBudget,
+                        ParticleSink sink, FrameCache frameCache, EmissionSlicer slicer, SectionDensityCap sectionCap,
+                        int generationThreads,
+                        Consumer<ActiveEffect> retireListener) {
+        this(logger, viewerResolver, particleBudget, sink, frameCache, slicer, sectionCap,
+                generationThreads > 0 ? new AsyncFrameGenerator(EffectEngine::buildFrame, generationThreads) : null,
+                retireListener);
+    }
+
+    /**
+     * Engine that generates frames on a worker pool shared with other engines
+     *
+     * @param generationPool shared worker pool, or null to build frames inline
+     */
+    public EffectEngine(Logger logger, ViewerResolver viewerResolver, ParticleBudget particleBudget,
+                        ParticleSink sink, FrameCache frameCache, EmissionSlicer slicer, SectionDensityCap sectionCap,
+                        ForkJoinPool generationPool,
+                        Consumer<ActiveEffect> retireListener) {
+        this(logger, viewerResolver, particleBudget, sink, frameCache, slicer, sectionCap,
+                generationPool != null ? new AsyncFrameGenerator(EffectEngine::buildFrame, generationPool) : null,
+                retireListener);
+    }
+
+    private EffectEngine(Logger logger, ViewerResolver viewerResolver, ParticleBudget particleBudget,
+                         ParticleSink sink, FrameCache frameCache, EmissionSlicer slicer, SectionDensityCap sectionCap,
+                         AsyncFrameGenerator frameGenerator,
+                         Consumer<ActiveEffect> retireListener) {
+        this.logger = logger;
+        this.viewerResolver = viewerResolver;
+        this.particleBudget = particleBudget;
+        this.sink = sink;
+        this.retireListener = retireListener;
+        this.frameCache = frameCache;
+        this.slicer = slicer;
+        this.sectionCap = sectionCap;
+        this.frameGenerator = frameGenerator;
+        this.activeEffects = new ActiveEffect[INITIAL_CAPACITY];
+    }
+
+    public void add(ActiveEffect effect) {
+        if (activeCount == activeEffects.length) {
+            activeEffects = Arrays.copyOf(activeEffects, activeEffects.length * 2);
+        }
+        activeEffects[activeCount++] = effect;
+    }
+
+    /**
+     * Drop every active effect without notifying the retire listener
+     */
+    public void clear() {
+        Arrays.fill(activeEffects, 0, activeCount, null);
+        activeCount = 0;
+    }
+
+    public void shutdown() {
+        if (frameGenerator != null) {
+            frameGenerator.shutdown();
+        }
+        clear();
+    }
+
+    /**
+     * Run one engine tick
+     *
+     * @param mspt the server's current average tick time, used to scale the particle budget
+     */
+    public void step(double mspt) {
+        long start = System.nanoTime();
+        if (frameGenerator != null) {
+            // Back buffers built since the last tick become readable once the batch has finished
+            frameGenerator.await();
+        }
+        particleBudget.update(mspt);
+        viewerResolver.beginTick();
+        if (frameCache != null) {
+            frameCache.beginTick();
+        }
+        lastUnviewedEffects = 0;
+        lastPreparedFrames = 0;
+
+        // First pass: retire finished effects, resolve viewers and build this tick's frames
+        double demand = 0;
+        int i = 0;
+        while (i < activeCount) {
+            ActiveEffect effect = activeEffects[i];
+            if (prepareEffect(effect)) {
+                demand += effect.getDemand();
+                i++;
+                continue;
+            }
+
+            // Retire in place by moving the last effect into this slot
+            retireListener.accept(effect);
+            activeCount--;
+            activeEffects[i] = activeEffects[activeCount];
+            activeEffects[activeCount] = null;
+        }
+
+        if (slicer != null) {
+            demand = sliceEffects(demand);
+        }
+        if (sectionCap != null) {
+            demand = sectionCap.apply(activeEffects, activeCount);
+        }
+
+        // Second pass: emit every frame, thinned together to fit the global budget
+        double thinning = particleBudget.getThinningFactor(demand);
+        int sent = 0;
+        long emitStart = System.nanoTime();
+        for (i = 0; i < activeCount; i++) {
+            ActiveEffect effect = activeEffects[i];
+            boolean viewed = !effect.getViewers().isEmpty();
+            if (viewed) {
+                sent += emitEffect(effect, thinning);
+            }
+            effect.advance();
+
+            // Effects that were watched this tick are likely watched next tick, so build ahead
+            if (viewed && frameGenerator != null && !effect.isFinished()) {
+                frameGenerator.add(effect);
+            }
+        }
+
+        if (slicer != null) {
+            slicer.record(System.nanoTime() - emitStart, sent);
+        }
+        if (frameGenerator != null) {
+            frameGenerator.submit();
+        }
+
+        lastParticlesSent = sent;
+        lastParticlesShed = Math.max(0, (int) Math.round(demand) - sent);
+        totalParticlesShed += lastParticlesShed;
+        lastStepNanos = System.nanoTime() - start;
+        averageStepNanos += (lastStepNanos - averageStepNanos) * STEP_TIME_SMOOTHING;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public long getLastStepNanos() {
+        return lastStepNanos;
+    }
+
+    public double getAverageStepNanos() {
+        return averageStepNanos;
+    }
+
+    public int getLastParticlesSent() {
+        return lastParticlesSent;
+    }
+
+    public int getLastParticlesShed() {
+        return lastParticlesShed;
+    }
+
+    public long getTotalParticlesShed() {
+        return totalParticlesShed;
+    }
+
+    public int getLastUnviewedEffects() {
+        return lastUnviewedEffects;
+    }
+
+    public int getLastPreparedFrames() {
+        return lastPreparedFrames;
+    }
+
+    /**
+     * Number of ticks dense effects were spread over last tick; 1 when slicing is off or unneeded
+     */
+    public int getLastSlices() {
+        return slicer != null ? slicer.getLastSlices() : 1;
+    }
+
+    /**
+     * Number of chunk sections over the density cap last tick
+     */
+    public int getLastCappedSections() {
+        return sectionCap != null ? sectionCap.getLastCappedSections() : 0;
+    }
+
+    public long getLastGenerationWaitNanos() {
+        return frameGenerator != null ? frameGenerator.getLastWaitNanos() : 0;
+    }
+
+    public boolean isAsyncGenerationEnabled() {
+        return frameGenerator != null;
+    }
+
+    /**
+     * Spread dense effects over several ticks when sending everything at once would exceed the
+     * per-tick emission time budget
+     *
+     * @return the particles wanted this tick once slicing is applied
+     */
+    private double sliceEffects(double demand) {
+        int slices = slicer.update(demand);
+        if (slices == 1) {
+            for (int i = 0; i < activeCount; i++) {
+                activeEffects[i].setSlices(1);
+            }
+            return demand;
+        }
+
+        double sliced = 0;
+        for (int i = 0; i < activeCount; i++) {
+            ActiveEffect effect = activeEffects[i];
+            // Clusters are one packet per point already, so slicing them saves nothing
+            int effectSlices = effect.getFrame().getCount() > 1 ? 1 : slicer.slicesFor(effect.getDemand(), slices);
+            effect.setSlices(effectSlices);
+            effect.setDemand(effect.getDemand() / effectSlices);
+            sliced += effect.getDemand();
+        }
+        return sliced;
+    }
+
+    /**
+     * Resolve viewers and build the frame for one tick, returning false once the effect has finished
+     */
+    private boolean prepareEffect(ActiveEffect effect) {
+        if (effect.isFinished()) {
+            return false;
+        }
+
+        ViewerSet viewers = effect.getViewers();
+        effect.setDemand(0);
+
+        try {
+            viewerResolver.resolve(effect.getWorld(), effect.getCenterX(), effect.getCenterY(), effect.getCenterZ(), viewers);
+            if (viewers.isEmpty()) {
+                lastUnviewedEffects++;
+                return true;
+            }
+
+            int tick = effect.getAnimationTick();
+            if (effect.swapIfPrepared(tick)) {
+                lastPreparedFrames++;
+            } else {
+                effect.setFrame(buildFrame(effect, tick, effect.getBuffer()));
+            }
+            effect.setDemand(computeDemand(effect.getFrame(), viewers));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Dropping particle effect for NPC " + effect.getNpcData().getNpcUuid(), e);
+            viewers.clear();
+            return false;
+        }
+
+        return true;
+    }
+
+    private int emitEffect(ActiveEffect effect, double thinning) {
+        try {
+            return emitFrame(effect, effect.getFrame(), thinning);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Dropping particle effect for NPC " + effect.getNpcData().getNpcUuid(), e);
+            effect.cancel();
+            return 0;
+        } finally {
+            effect.getViewers().clear();
+        }
+    }
+
+    /**
+     * Number of particles the frame would send to these viewers before budget thinning
+     */
+    private double computeDemand(ParticleFrame frame, ViewerSet viewers) {
+        int count = frame.getCount();
+        int points = frame.size();
+        double demand = 0;
+
+        for (int v = 0; v < viewers.size(); v++) {
+            double factor = Math.min(viewerResolver.getDensityFactor(viewers.getBand(v)), 1.0);
+            if (factor <= 0) {
+                continue;
+            }
+
+            if (count > 1) {
+                demand += Math.max(1, Math.round(count * factor)) * (double) points;
+            } else {
+                demand += points * factor;
+            }
+        }
+        return demand;
+    }
+
+    /**
+     * Produce an effect's points for one animation tick, from the shared frame cache when the
+     * profile is cached and otherwise by filling the given buffer.
+     * Runs on frame generator threads as well as the engine thread, so it must not touch unsynchronized state.
+     */
+    private static ParticleFrame buildFrame(ActiveEffect effect, int tick, ParticleFrame buffer) {
+        FrameCache.Profile profile = effect.getFrameProfile();
+        if (profile != null) {
+            return profile.get(effect, tick, buffer);
+        }
+        effect.getGenerator().generate(effect, tick, buffer);
+        return buffer;
+    }
+
+    /**
+     * Send the frame to each viewer, thinned by the viewer's distance band, the section cap and the global budget.
+     * A sliced effect sends every slices-th point, starting from a different offset each tick.
+     * Passes primitive coordinates so no Location is allocated per point.
+     */
+    private int emitFrame(ActiveEffect effect, ParticleFrame frame, double thinning) {
+        ViewerSet viewers = effect.getViewers();
+        NPCData npcData = effect.getNpcData();
+        Particle particle = npcData.getParticleType();
+        double speed = npcData.getSpeed();
+        double centerX = effect.getCenterX();
+        double centerY = effect.getCenterY();
+        double centerZ = effect.getCenterZ();
+        int count = frame.getCount();
+        double spread = frame.getSpread();
+        int points = frame.size();
+        double accumulator = effect.getEmitCarry();
+        double effectThinning = thinning * effect.getSectionFactor();
+        int slices = effect.getSlices();
+        int slice = effect.nextSlice();
+        int sent = 0;
+
+        for (int v = 0; v < viewers.size(); v++) {
+            Player player = viewers.getPlayer(v);
+            double factor = Math.min(viewerResolver.getDensityFactor(viewers.getBand(v)), 1.0);
+            if (factor <= 0) {
+                continue;
+            }
+
+            if (count > 1) {
+                // Clustered points thin their particle count instead of their positions
+                accumulator += Math.max(1, Math.round(count * factor)) * effectThinning;
+                int scaledCount = (int) accumulator;
+                if (scaledCount == 0) {
+                    continue;
+                }
+                accumulator -= scaledCount;
+
+                for (int i = 0; i < points; i++) {
+                    sink.spawn(player, particle,
+                            centerX + frame.getX(i), centerY + frame.getY(i), centerZ + frame.getZ(i),
+                            scaledCount, spread, speed);
+                }
+                sent += scaledCount * points;
+                continue;
+            }
+
+            // Spread the kept points evenly across this tick's slice of the frame
+            double keep = factor * effectThinning;
+            for (int i = slice; i < points; i += slices) {
+                accumulator += keep;
+                if (accumulator < 1) {
+                    continue;
+                }
+                accumulator -= 1;
+
+                sink.spawn(player, particle,
+                        centerX + frame.getX(i), centerY + frame.getY(i), centerZ + frame.getZ(i),
+                        1, spread, speed);
+                sent++;
+            }
+        }
+
+        effect.setEmitCarry(accumulator);
+        return sent;
+    }
+}
@@ -0,0 +1,73 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+/**
+ * Chooses how many ticks dense effects spread each frame's emission over, so that sending
+ * particles costs a roughly flat amount of main-thread time per tick instead of bursting.
+ * The cost of a particle is learned from the engine's own emission timings.
+ */
+public class EmissionSlicer {
+    private static final double COST_SMOOTHING = 0.1;
+    private static final double INITIAL_NANOS_PER_PARTICLE = 1000.0;
+
+    private double budgetNanos;
+    private int maxSlices;
+    private int minPoints;
+    private double nanosPerParticle = INITIAL_NANOS_PER_PARTICLE;
+    private int lastSlices = 1;
+
+    /**
+     * @param budgetMillis main-thread time per tick the engine aims to spend emitting particles
+     * @param maxSlices most ticks a single frame may be spread over
+     * @param minPoints effects sending fewer particles than this per tick are never sliced
+     */
+    public EmissionSlicer(double budgetMillis, int maxSlices, int minPoints) {
+        configure(budgetMillis, maxSlices, minPoints);
+    }
+
+    public void configure(double budgetMillis, int maxSlices, int minPoints) {
+        this.budgetNanos = budgetMillis * 1_000_000.0;
+        this.maxSlices = Math.max(1, maxSlices);
+        this.minPoints = Math.max(1, minPoints);
+    }
+
+    /**
+     * Pick the slice count for this tick from the particles all effects want to send
+     */
+    public int update(double demand) {
+        double affordable = budgetNanos / nanosPerParticle;
+        int slices = 1;
+        if (demand > affordable && affordable > 0) {
+            slices = (int) Math.min(maxSlices, Math.ceil(demand / affordable));
+        }
+        lastSlices = slices;
+        return slices;
+    }
+
+    /**
+     * Slice count for one effect; effects below the minimum size are always sent whole
+     */
+    public int slicesFor(double effectDemand, int slices) {
+        return effectDemand >= minPoints ? slices : 1;
+    }
+
+    /**
+     * Feed back how long sending the last tick's particles took
+     */
+    public void record(long nanos, int particles) {
+        if (particles <= 0) {
+            return;
+        }
+        nanosPerParticle += ((double) nanos / particles - nanosPerParticle) * COST_SMOOTHING;
+    }
+
+    public double getNanosPerParticle() {
+        return nanosPerParticle;
+    }
+
+    /**
+     * Slice count chosen for the last tick; 1 means nothing was sliced
+     */
+    public int getLastSlices() {
+        return lastSlices;
+    }
+}
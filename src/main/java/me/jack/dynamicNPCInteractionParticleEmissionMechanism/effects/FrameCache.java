@@ -0,0 +1,241 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computed frames shared between effects with the same deterministic profile.
+ * Frames are center-relative, so every effect of a profile can emit the same frame for the
+ * same animation tick and only add its own center.
+ * <p>
+ * Effects resolve their {@link Profile} once at spawn, so a lookup is a single array read.
+ * Profiles are keyed by the generator's {@link ShapeGenerator#getSource() source}, so effects
+ * playing a baked copy share frames with effects still using the live generator.
+ * The cache is bounded by the total number of cached points; when it is full, profiles that
+ * have not been used for a tick are dropped, least recently used first. If every cached profile
+ * is still in use, missing frames are built into the effect's own buffer instead, so an
+ * oversubscribed cache does not allocate and throw away frames every tick. At most
+ * MAX_PROFILES profiles are kept; beyond that the least recently used one is retired.
+ * Safe to use from frame generator threads.
+ */
+public class FrameCache {
+    private static final int MAX_PROFILES = 512;
+    // The recency clock counts server ticks of wall time, so engines on several regions share it
+    private static final long TICK_NANOS = 50_000_000L;
+
+    private final Map<Key, Profile> profiles = new ConcurrentHashMap<>();
+    private final AtomicLong cachedPoints = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final long maxPoints;
+    private final AtomicLong clock = new AtomicLong();
+    // Clock value of the last eviction pass that could not make room; guarded by this
+    private long fullSince = -1;
+
+    private record Key(ShapeGenerator generator, int density, double radius, double height,
+                       int rotations, double animationSpeed, int duration) {
+    }
+
+    public FrameCache(long maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Get the shared frames for an NPC profile, or null if its generator is not deterministic
+     */
+    public Profile profile(ShapeGenerator generator, NPCData npcData) {
+        if (!generator.isDeterministic() || npcData.getDuration() <= 0) {
+            return null;
+        }
+
+        Key key = new Key(generator.getSource(), npcData.getDensity(), npcData.getRadius(), npcData.getHeight(),
+                npcData.getRotations(), npcData.getAnimationSpeed(), npcData.getDuration());
+        Profile profile = profiles.get(key);
+        if (profile != null) {
+            return profile;
+        }
+
+        if (profiles.size() >= MAX_PROFILES) {
+            retireLeastRecent();
+        }
+        return profiles.computeIfAbsent(key, k -> new Profile(generator.animationPeriod(npcData) > 0
+                ? generator.animationPeriod(npcData) : npcData.getDuration()));
+    }
+
+    /**
+     * Advance the recency clock; called by each engine once per tick
+     */
+    public void beginTick() {
+        long now = System.nanoTime() / TICK_NANOS;
+        clock.accumulateAndGet(now, Math::max);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCachedPoints() {
+        return cachedPoints.get();
+    }
+
+    /**
+     * Drop every cached frame; profiles still held by running effects stop caching
+     */
+    public synchronized void clear() {
+        for (Profile profile : profiles.values()) {
+            profile.retired = true;
+            profile.evict();
+        }
+        profiles.clear();
+    }
+
+    /**
+     * Check there is room for a frame of about this many points, evicting idle profiles if needed
+     */
+    private boolean reserve(Profile keep, int points) {
+        if (cachedPoints.get() + points <= maxPoints) {
+            return true;
+        }
+        return evictIdle(keep, points);
+    }
+
+    /**
+     * Drop the profile used least recently; effects still holding it build their own frames
+     */
+    private synchronized void retireLeastRecent() {
+        Map.Entry<Key, Profile> oldest = null;
+        for (Map.Entry<Key, Profile> entry : profiles.entrySet()) {
+            if (oldest == null || entry.getValue().lastUsed < oldest.getValue().lastUsed) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && profiles.remove(oldest.getKey(), oldest.getValue())) {
+            oldest.getValue().retired = true;
+            oldest.getValue().evict();
+        }
+    }
+
+    private void added(Profile profile, int points) {
+        if (cachedPoints.addAndGet(points) > maxPoints) {
+            evictIdle(profile, 0);
+        }
+    }
+
+    /**
+     * Drop whole profiles that were not used this tick or the last, least recently used first,
+     * until the cache has room for the given number of points
+     */
+    private synchronized boolean evictIdle(Profile keep, int points) {
+        long now = clock.get();
+        if (fullSince == now) {
+            // Already found nothing idle this tick; profiles only go idle as the clock moves
+            return cachedPoints.get() + points <= maxPoints;
+        }
+
+        List<Profile> candidates = new ArrayList<>(profiles.values());
+        candidates.sort(Comparator.comparingLong(profile -> profile.lastUsed));
+        for (Profile profile : candidates) {
+            if (cachedPoints.get() + points <= maxPoints) {
+                return true;
+            }
+            if (profile.lastUsed >= now - 1) {
+                break;
+            }
+            if (profile != keep) {
+                profile.evict();
+            }
+        }
+
+        if (cachedPoints.get() + points <= maxPoints) {
+            return true;
+        }
+        fullSince = now;
+        return false;
+    }
+
+    private static int cost(ParticleFrame frame) {
+        return Math.max(1, frame.size());
+    }
+
+    /**
+     * Every animation tick of one deterministic profile
+     */
+    public final class Profile {
+        private final AtomicReferenceArray<ParticleFrame> frames;
+        private volatile long lastUsed;
+        private volatile boolean retired;
+
+        private Profile(int period) {
+            this.frames = new AtomicReferenceArray<>(period);
+            this.lastUsed = clock.get();
+        }
+
+        /**
+         * Get the shared frame for a tick, computing it on first use.
+         * The returned frame must not be modified. Once the profile has been retired the
+         * frame is built into the effect's own buffer instead. Frames are built with the
+         * effect's own generator, which may be the live one or a baked copy of it. Animations
+         * that never repeat exactly only have their first duration's worth of ticks cached.
+         */
+        public ParticleFrame get(ActiveEffect effect, int tick, ParticleFrame buffer) {
+            ShapeGenerator generator = effect.getGenerator();
+            if (retired || tick >= frames.length()) {
+                generator.generate(effect, tick, buffer);
+                return buffer;
+            }
+
+            long now = clock.get();
+            if (lastUsed != now) {
+                lastUsed = now;
+            }
+
+            ParticleFrame frame = frames.get(tick);
+            if (frame != null) {
+                hits.increment();
+                return frame;
+            }
+
+            misses.increment();
+            if (!reserve(this, effect.getNpcData().getDensity())) {
+                generator.generate(effect, tick, buffer);
+                return buffer;
+            }
+            frame = new ParticleFrame(effect.getNpcData().getDensity());
+            generator.generate(effect, tick, frame);
+            if (frames.compareAndSet(tick, null, frame)) {
+                added(this, cost(frame));
+                if (retired) {
+                    // Cleared while this frame was being built; release it again
+                    evict();
+                }
+                return frame;
+            }
+
+            // Another thread cached this tick first; prefer its frame so both effects share one copy
+            ParticleFrame winner = frames.get(tick);
+            return winner != null ? winner : frame;
+        }
+
+        private void evict() {
+            for (int tick = 0; tick < frames.length(); tick++) {
+                ParticleFrame frame = frames.getAndSet(tick, null);
+                if (frame != null) {
+                    cachedPoints.addAndGet(-cost(frame));
+                }
+            }
+        }
+    }
+}
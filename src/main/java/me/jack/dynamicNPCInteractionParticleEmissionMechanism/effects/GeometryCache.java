@@ -0,0 +1,72 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.GeometryShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of precomputed shape geometry keyed by the generator and the parameters that define it.
+ * Repeat effects with the same profile reuse the same tables and do no trigonometry.
+ * Holds at most MAX_ENTRIES tables and drops the least recently used one beyond that; running
+ * effects keep the tables they already have.
+ */
+public class GeometryCache {
+    private static final int MAX_ENTRIES = 512;
+
+    // Access-ordered, so the eldest entry is the least recently used; guarded by itself
+    private final Map<Key, ShapeGeometry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ShapeGeometry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private record Key(ShapeGenerator generator, int density, double radius, double height,
+                       int rotations, double animationSpeed, int duration) {
+    }
+
+    /**
+     * Get the geometry for an NPC profile, building it on first use.
+     * Returns null for generators that are not backed by precomputed geometry.
+     */
+    public ShapeGeometry get(ShapeGenerator generator, NPCData npcData) {
+        if (!(generator instanceof GeometryShapeGenerator) || npcData.getDuration() <= 0) {
+            return null;
+        }
+
+        Key key = new Key(generator, npcData.getDensity(), npcData.getRadius(), npcData.getHeight(),
+                npcData.getRotations(), npcData.getAnimationSpeed(), npcData.getDuration());
+
+        synchronized (cache) {
+            ShapeGeometry geometry = cache.get(key);
+            if (geometry != null) {
+                return geometry;
+            }
+        }
+
+        // Built outside the lock so a large shape does not hold up other lookups
+        ShapeGeometry geometry = ((GeometryShapeGenerator) generator).createGeometry(npcData);
+        synchronized (cache) {
+            ShapeGeometry existing = cache.putIfAbsent(key, geometry);
+            return existing != null ? existing : geometry;
+        }
+    }
+
+    /**
+     * Get the number of cached geometry tables
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
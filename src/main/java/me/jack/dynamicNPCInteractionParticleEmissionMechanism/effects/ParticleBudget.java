@@ -0,0 +1,72 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+/**
+ * Global particles-per-tick budget that shrinks as the server's tick time rises.
+ * Effects are thinned proportionally when their combined demand exceeds the budget.
+ */
+public class ParticleBudget {
+    private int baseBudget;
+    private double[] msptThresholds;
+    private double[] budgetFactors;
+    private int level;
+    private int currentBudget;
+    private double lastMspt;
+
+    public ParticleBudget(int baseBudget, double[] msptThresholds, double[] budgetFactors) {
+        configure(baseBudget, msptThresholds, budgetFactors);
+    }
+
+    /**
+     * Replace the budget settings; thresholds must be ascending and match the factor count
+     */
+    public void configure(int baseBudget, double[] msptThresholds, double[] budgetFactors) {
+        this.baseBudget = baseBudget;
+        this.msptThresholds = msptThresholds.clone();
+        this.budgetFactors = budgetFactors.clone();
+        update(lastMspt);
+    }
+
+    /**
+     * Recompute the degradation level and budget from the server's recent tick time
+     */
+    public void update(double mspt) {
+        lastMspt = mspt;
+
+        int newLevel = 0;
+        while (newLevel < msptThresholds.length && mspt >= msptThresholds[newLevel]) {
+            newLevel++;
+        }
+
+        level = newLevel;
+        currentBudget = newLevel == 0 ? baseBudget : (int) (baseBudget * budgetFactors[newLevel - 1]);
+    }
+
+    /**
+     * Fraction of the requested particles that fit in the budget this tick
+     */
+    public double getThinningFactor(double demand) {
+        if (demand <= currentBudget) {
+            return 1.0;
+        }
+        return currentBudget / demand;
+    }
+
+    /**
+     * Number of thresholds the server's tick time currently exceeds; 0 means full budget
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public int getCurrentBudget() {
+        return currentBudget;
+    }
+
+    public int getBaseBudget() {
+        return baseBudget;
+    }
+
+    public double getLastMspt() {
+        return lastMspt;
+    }
+}
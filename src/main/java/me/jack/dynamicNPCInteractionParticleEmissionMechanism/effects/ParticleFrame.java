@@ -0,0 +1,87 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of center-relative particle positions for one tick of an effect.
+ * Backed by primitive arrays that only grow, so steady-state use allocates nothing.
+ */
+public final class ParticleFrame {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private int size;
+    private int count;
+    private double spread;
+
+    public ParticleFrame() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ParticleFrame(int capacity) {
+        int initial = Math.max(1, capacity);
+        this.x = new double[initial];
+        this.y = new double[initial];
+        this.z = new double[initial];
+        this.count = 1;
+    }
+
+    /**
+     * Clear the frame and make room for at least the given number of points
+     */
+    public void reset(int capacity) {
+        if (capacity > x.length) {
+            int newCapacity = Math.max(capacity, x.length * 2);
+            x = Arrays.copyOf(x, newCapacity);
+            y = Arrays.copyOf(y, newCapacity);
+            z = Arrays.copyOf(z, newCapacity);
+        }
+        size = 0;
+        count = 1;
+        spread = 0;
+    }
+
+    /**
+     * Append a point; callers must reset with enough capacity first
+     */
+    public void add(double px, double py, double pz) {
+        x[size] = px;
+        y[size] = py;
+        z[size] = pz;
+        size++;
+    }
+
+    /**
+     * Set how many particles are spawned per point and their random spread
+     */
+    public void setCluster(int count, double spread) {
+        this.count = count;
+        this.spread = spread;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getZ(int index) {
+        return z[index];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSpread() {
+        return spread;
+    }
+}
@@ -0,0 +1,19 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import org.bukkit.Particle;
+import org.bukkit.entity.Player;
+
+/**
+ * Destination for the particles the engine emits
+ */
+@FunctionalInterface
+public interface ParticleSink {
+    /**
+     * Sends particles straight to the viewer's client. The engine only passes viewers owned by
+     * the calling thread, so this is safe on Folia region threads.
+     */
+    ParticleSink PLAYER = (viewer, particle, x, y, z, count, spread, speed) ->
+            viewer.spawnParticle(particle, x, y, z, count, spread, spread, spread, speed);
+
+    void spawn(Player viewer, Particle particle, double x, double y, double z, int count, double spread, double speed);
+}
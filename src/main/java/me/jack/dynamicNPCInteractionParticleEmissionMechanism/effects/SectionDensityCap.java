@@ -0,0 +1,139 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.LongDoubleHashMap;
+import org.bukkit.World;
+
+import java.util.Arrays;
+
+/**
+ * Limits the particles emitted per 16x16x16 chunk section per tick.
+ * Every effect in a section over the cap is thinned by the same factor, so a cluster of
+ * NPCs cannot flood the players standing around it while quiet areas are unaffected.
+ */
+public class SectionDensityCap {
+    private static final int COORD_BITS = 22;
+    private static final int Y_BITS = 12;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int WORLD_SHIFT = COORD_BITS * 2 + Y_BITS;
+
+    private final LongDoubleHashMap loadBySection = new LongDoubleHashMap(64);
+    // Worlds seen this tick; the position in here goes into the section key. There are
+    // almost always only a few, so a scan starting at the last match beats hashing and boxing.
+    private World[] worlds = new World[4];
+    private int worldCount;
+    private int lastWorld;
+    // Section key of each effect, computed once per tick
+    private long[] keys = new long[64];
+    private double cap;
+    private int lastCappedSections;
+    private double lastPeakLoad;
+
+    /**
+     * @param cap particles per section per tick
+     */
+    public SectionDensityCap(double cap) {
+        configure(cap);
+    }
+
+    public void configure(double cap) {
+        this.cap = cap;
+    }
+
+    /**
+     * Total each section's load for this tick and thin the effects in sections over the cap
+     *
+     * @return the particles wanted this tick once the cap is applied
+     */
+    public double apply(ActiveEffect[] effects, int count) {
+        loadBySection.clear();
+        Arrays.fill(worlds, 0, worldCount, null);
+        worldCount = 0;
+        lastWorld = 0;
+        if (keys.length < count) {
+            keys = new long[Math.max(count, keys.length * 2)];
+        }
+        lastCappedSections = 0;
+        lastPeakLoad = 0;
+
+        for (int i = 0; i < count; i++) {
+            ActiveEffect effect = effects[i];
+            effect.setSectionFactor(1.0);
+            if (effect.getDemand() > 0) {
+                keys[i] = sectionKey(effect);
+                double added = load(effect);
+                double load = loadBySection.add(keys[i], added);
+                if (load > cap && load - added <= cap) {
+                    lastCappedSections++;
+                }
+                lastPeakLoad = Math.max(lastPeakLoad, load);
+            }
+        }
+
+        double demand = 0;
+        for (int i = 0; i < count; i++) {
+            ActiveEffect effect = effects[i];
+            if (effect.getDemand() <= 0) {
+                continue;
+            }
+
+            double load = loadBySection.get(keys[i]);
+            if (load > cap) {
+                double factor = cap / load;
+                effect.setSectionFactor(factor);
+                effect.setDemand(effect.getDemand() * factor);
+            }
+            demand += effect.getDemand();
+        }
+
+        return demand;
+    }
+
+    /**
+     * Number of sections that were over the cap last tick
+     */
+    public int getLastCappedSections() {
+        return lastCappedSections;
+    }
+
+    /**
+     * Highest per-section load seen last tick, before capping
+     */
+    public double getLastPeakLoad() {
+        return lastPeakLoad;
+    }
+
+    /**
+     * Particles per tick this effect puts into its section, independent of how many players watch it
+     */
+    private static double load(ActiveEffect effect) {
+        ParticleFrame frame = effect.getFrame();
+        return (double) frame.size() * frame.getCount() / effect.getSlices();
+    }
+
+    private long sectionKey(ActiveEffect effect) {
+        return ((long) worldIndex(effect.getWorld()) << WORLD_SHIFT)
+                | ((effect.getSectionX() & COORD_MASK) << (COORD_BITS + Y_BITS))
+                | ((effect.getSectionZ() & COORD_MASK) << Y_BITS)
+                | (effect.getSectionY() & Y_MASK);
+    }
+
+    private int worldIndex(World world) {
+        if (lastWorld < worldCount && worlds[lastWorld] == world) {
+            return lastWorld;
+        }
+        for (int i = 0; i < worldCount; i++) {
+            if (worlds[i] == world) {
+                lastWorld = i;
+                return i;
+            }
+        }
+
+        if (worldCount == worlds.length) {
+            worlds = Arrays.copyOf(worlds, worldCount * 2);
+        }
+        worlds[worldCount] = world;
+        lastWorld = worldCount;
+        return worldCount++;
+    }
+}
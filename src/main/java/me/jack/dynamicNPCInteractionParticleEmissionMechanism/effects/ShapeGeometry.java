@@ -0,0 +1,163 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+/**
+ * Precomputed, center-relative point offsets for one shape profile.
+ * Instances are shared between effects and must be treated as read-only.
+ */
+public final class ShapeGeometry {
+    /** Longest animation cycle a moving shape is looked up in tables for, in ticks */
+    public static final int MAX_PERIOD = 1200;
+    // Rounding error allowed when checking that a cycle holds a whole number of turns
+    private static final double PERIOD_EPSILON = 1e-9;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    public enum Motion {
+        /** Points never move */
+        STATIC,
+        /** Points rotate around the vertical axis by a per-tick angle */
+        ROTATE,
+        /** Points bob vertically by a per-tick phase shift */
+        PHASE
+    }
+
+    private final Motion motion;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final double[] phaseSin;
+    private final double[] phaseCos;
+    private final double radiansPerTick;
+    // One cycle of the transform, or null when it never repeats within MAX_PERIOD ticks
+    private final double[] tickCos;
+    private final double[] tickSin;
+
+    private ShapeGeometry(Motion motion, double[] x, double[] y, double[] z, double[] phaseSin,
+                          double[] phaseCos, double radiansPerTick, double[] tickCos, double[] tickSin) {
+        this.motion = motion;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.phaseSin = phaseSin;
+        this.phaseCos = phaseCos;
+        this.radiansPerTick = radiansPerTick;
+        this.tickCos = tickCos;
+        this.tickSin = tickSin;
+    }
+
+    /**
+     * Geometry whose points never move
+     */
+    public static ShapeGeometry fixed(double[] x, double[] y, double[] z) {
+        return new ShapeGeometry(Motion.STATIC, x, y, z, null, null, 0, null, null);
+    }
+
+    /**
+     * Geometry rotated around the vertical axis by radiansPerTick each tick
+     *
+     * @param period the transform's {@link #period}; its cosines and sines are tabled for one cycle
+     */
+    public static ShapeGeometry rotating(double[] x, double[] y, double[] z, double radiansPerTick, int period) {
+        return new ShapeGeometry(Motion.ROTATE, x, y, z, null, null, radiansPerTick,
+                cosines(radiansPerTick, period), sines(radiansPerTick, period));
+    }
+
+    /**
+     * Geometry whose points are offset vertically by amplitude * sin(phase + tick * radiansPerTick).
+     * The phase terms are stored pre-multiplied by the amplitude.
+     */
+    public static ShapeGeometry phased(double[] x, double[] y, double[] z, double[] phaseSin, double[] phaseCos,
+                                       double radiansPerTick, int period) {
+        return new ShapeGeometry(Motion.PHASE, x, y, z, phaseSin, phaseCos, radiansPerTick,
+                cosines(radiansPerTick, period), sines(radiansPerTick, period));
+    }
+
+    public Motion getMotion() {
+        return motion;
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double[] getX() {
+        return x;
+    }
+
+    public double[] getY() {
+        return y;
+    }
+
+    public double[] getZ() {
+        return z;
+    }
+
+    public double[] getPhaseSin() {
+        return phaseSin;
+    }
+
+    public double[] getPhaseCos() {
+        return phaseCos;
+    }
+
+    /**
+     * Cosine of the transform angle for the given tick
+     */
+    public double tickCos(int tick) {
+        return tickCos != null ? tickCos[tick % tickCos.length] : Math.cos(angle(tick));
+    }
+
+    /**
+     * Sine of the transform angle for the given tick
+     */
+    public double tickSin(int tick) {
+        return tickSin != null ? tickSin[tick % tickSin.length] : Math.sin(angle(tick));
+    }
+
+    private double angle(int tick) {
+        // Reduced first, so a long-running loop keeps full precision
+        return (tick * radiansPerTick) % TWO_PI;
+    }
+
+    /**
+     * Length of the shortest cycle after which a transform turning at this many radians per tick
+     * is back where it started: a whole number of turns, exactly. Returns 0 if there is no such
+     * cycle within MAX_PERIOD ticks, and the duration for a shape that does not turn. The speed is
+     * never rounded to make a cycle fit.
+     */
+    public static int period(double radiansPerTick, int duration) {
+        double turnsPerTick = Math.abs(radiansPerTick) / TWO_PI;
+        if (turnsPerTick == 0 || Double.isNaN(turnsPerTick)) {
+            return duration;
+        }
+
+        for (int period = 1; period <= MAX_PERIOD; period++) {
+            double turns = turnsPerTick * period;
+            if (turns >= 1 - PERIOD_EPSILON && Math.abs(turns - Math.rint(turns)) <= PERIOD_EPSILON * turns) {
+                return period;
+            }
+        }
+        return 0;
+    }
+
+    private static double[] cosines(double radiansPerTick, int period) {
+        if (period <= 0) {
+            return null;
+        }
+        double[] result = new double[period];
+        for (int tick = 0; tick < period; tick++) {
+            result[tick] = Math.cos(tick * radiansPerTick);
+        }
+        return result;
+    }
+
+    private static double[] sines(double radiansPerTick, int period) {
+        if (period <= 0) {
+            return null;
+        }
+        double[] result = new double[period];
+        for (int tick = 0; tick < period; tick++) {
+            result[tick] = Math.sin(tick * radiansPerTick);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves which players can see an effect and how much of it they should receive.
+ * Each world's player list is fetched at most once per tick.
+ * <p>
+ * On Folia a resolver only considers players owned by the region it runs on, since other
+ * players may only be read or sent packets from their own region's thread. Folia merges the
+ * regions of nearby players' loaded chunks, so players close enough to see an effect share
+ * its region in practice.
+ */
+public class ViewerResolver {
+    private final boolean regionOwnedOnly;
+    private final Map<World, List<Player>> playersByWorld = new IdentityHashMap<>();
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private double[] bandDistancesSquared;
+    private double[] bandDensityFactors;
+
+    public ViewerResolver(double[] bandDistances, double[] bandDensityFactors) {
+        this(bandDistances, bandDensityFactors, false);
+    }
+
+    /**
+     * @param regionOwnedOnly only resolve players owned by the current region, for Folia
+     */
+    public ViewerResolver(double[] bandDistances, double[] bandDensityFactors, boolean regionOwnedOnly) {
+        this.regionOwnedOnly = regionOwnedOnly;
+        configure(bandDistances, bandDensityFactors);
+    }
+
+    /**
+     * Replace the distance bands; distances must be ascending and match the factor count
+     */
+    public void configure(double[] bandDistances, double[] bandDensityFactors) {
+        double[] squared = new double[bandDistances.length];
+        for (int i = 0; i < bandDistances.length; i++) {
+            squared[i] = bandDistances[i] * bandDistances[i];
+        }
+        this.bandDistancesSquared = squared;
+        this.bandDensityFactors = bandDensityFactors.clone();
+    }
+
+    /**
+     * Forget the player lists cached during the previous tick
+     */
+    public void beginTick() {
+        playersByWorld.clear();
+    }
+
+    /**
+     * Fill the viewer set with every player within the outermost band of the given point
+     */
+    public void resolve(World world, double x, double y, double z, ViewerSet viewers) {
+        viewers.clear();
+
+        List<Player> players = playersByWorld.get(world);
+        if (players == null) {
+            players = regionOwnedOnly ? ownedPlayers(world) : world.getPlayers();
+            playersByWorld.put(world, players);
+        }
+
+        double[] bands = bandDistancesSquared;
+        if (bands.length == 0) {
+            return;
+        }
+        double maxDistanceSquared = bands[bands.length - 1];
+
+        for (int i = 0, count = players.size(); i < count; i++) {
+            Player player = players.get(i);
+            double distanceSquared = distanceSquared(player, x, y, z);
+            if (distanceSquared > maxDistanceSquared) {
+                continue;
+            }
+
+            int band = 0;
+            while (distanceSquared > bands[band]) {
+                band++;
+            }
+            viewers.add(player, band);
+        }
+    }
+
+    private static List<Player> ownedPlayers(World world) {
+        List<Player> players = world.getPlayers();
+        List<Player> owned = new ArrayList<>(players.size());
+        for (int i = 0, count = players.size(); i < count; i++) {
+            Player player = players.get(i);
+            // Checked before the location is touched; reading it is itself a cross-region access
+            if (Bukkit.isOwnedByCurrentRegion(player)) {
+                owned.add(player);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Fraction of an effect's particles sent to viewers in the given band
+     */
+    public double getDensityFactor(int band) {
+        return bandDensityFactors[band];
+    }
+
+    private double distanceSquared(Player player, double x, double y, double z) {
+        Location location = player.getLocation(scratch);
+        double dx = location.getX() - x;
+        double dy = location.getY() - y;
+        double dz = location.getZ() - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
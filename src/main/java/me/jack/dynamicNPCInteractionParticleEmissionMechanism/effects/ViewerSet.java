@@ -0,0 +1,45 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects;
+
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of players that can see an effect this tick, with the distance band each falls in
+ */
+public final class ViewerSet {
+    private Player[] players = new Player[16];
+    private int[] bands = new int[16];
+    private int size;
+
+    public void clear() {
+        Arrays.fill(players, 0, size, null);
+        size = 0;
+    }
+
+    public void add(Player player, int band) {
+        if (size == players.length) {
+            players = Arrays.copyOf(players, size * 2);
+            bands = Arrays.copyOf(bands, size * 2);
+        }
+        players[size] = player;
+        bands[size] = band;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Player getPlayer(int index) {
+        return players[index];
+    }
+
+    public int getBand(int index) {
+        return bands[index];
+    }
+}
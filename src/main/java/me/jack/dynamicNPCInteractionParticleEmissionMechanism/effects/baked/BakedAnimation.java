@@ -0,0 +1,187 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.baked;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Every frame of an effect profile, quantized and stored in a memory-mapped file.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ * int magic, int version, long profileHash, int frames, float scale, int totalPoints
+ * frames x (int firstPoint, int points, int count, float spread)
+ * totalPoints x (short x, short y, short z)   coordinate = value * scale
+ * </pre>
+ * Reads use absolute offsets only, so one instance can be decoded from several threads at once.
+ */
+public final class BakedAnimation {
+    private static final int MAGIC = 0x44_4E_50_42; // "DNPB"
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 28;
+    private static final int FRAME_BYTES = 16;
+    private static final int POINT_BYTES = 6;
+
+    private final ByteBuffer buffer;
+    private final int frames;
+    private final float scale;
+    private final int pointsOffset;
+
+    private BakedAnimation(ByteBuffer buffer, int frames, float scale) {
+        this.buffer = buffer;
+        this.frames = frames;
+        this.scale = scale;
+        this.pointsOffset = HEADER_BYTES + frames * FRAME_BYTES;
+    }
+
+    /**
+     * Map a baked file, returning null if it is missing, truncated, from another format version
+     * or baked for a different profile
+     */
+    public static BakedAnimation open(Path file, long profileHash) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != profileHash) {
+                return null;
+            }
+
+            int frames = buffer.getInt(16);
+            float scale = buffer.getFloat(20);
+            int totalPoints = buffer.getInt(24);
+            long expected = HEADER_BYTES + (long) frames * FRAME_BYTES + (long) totalPoints * POINT_BYTES;
+            if (frames <= 0 || totalPoints < 0 || expected != size) {
+                return null;
+            }
+            return new BakedAnimation(buffer, frames, scale);
+        }
+    }
+
+    /**
+     * Render every frame of the effect's animation and write it to the file.
+     * The generator must be deterministic, since it is run twice per frame: once to size
+     * and scale the file and once to write it.
+     *
+     * @return false if the baked file would exceed maxBytes; nothing is written in that case
+     */
+    public static boolean bake(Path file, long profileHash, ShapeGenerator generator, ActiveEffect effect,
+                               int frames, long maxBytes) throws IOException {
+        ParticleFrame frame = new ParticleFrame();
+        long totalPoints = 0;
+        double maxAbs = 0;
+
+        for (int tick = 0; tick < frames; tick++) {
+            generator.generate(effect, tick, frame);
+            totalPoints += frame.size();
+            for (int i = 0; i < frame.size(); i++) {
+                maxAbs = Math.max(maxAbs, Math.max(Math.abs(frame.getX(i)),
+                        Math.max(Math.abs(frame.getY(i)), Math.abs(frame.getZ(i)))));
+            }
+        }
+
+        long size = HEADER_BYTES + (long) frames * FRAME_BYTES + totalPoints * POINT_BYTES;
+        if (size > maxBytes || size > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        float scale = maxAbs > 0 ? (float) (maxAbs / Short.MAX_VALUE) : 1.0f;
+        double inverse = 1.0 / scale;
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(profileHash)
+                .putInt(frames).putFloat(scale).putInt((int) totalPoints);
+
+        int pointsOffset = HEADER_BYTES + frames * FRAME_BYTES;
+        int firstPoint = 0;
+        for (int tick = 0; tick < frames; tick++) {
+            generator.generate(effect, tick, frame);
+            int points = frame.size();
+            buffer.putInt(HEADER_BYTES + tick * FRAME_BYTES, firstPoint)
+                    .putInt(HEADER_BYTES + tick * FRAME_BYTES + 4, points)
+                    .putInt(HEADER_BYTES + tick * FRAME_BYTES + 8, frame.getCount())
+                    .putFloat(HEADER_BYTES + tick * FRAME_BYTES + 12, (float) frame.getSpread());
+
+            int offset = pointsOffset + firstPoint * POINT_BYTES;
+            for (int i = 0; i < points; i++) {
+                buffer.putShort(offset, quantize(frame.getX(i), inverse))
+                        .putShort(offset + 2, quantize(frame.getY(i), inverse))
+                        .putShort(offset + 4, quantize(frame.getZ(i), inverse));
+                offset += POINT_BYTES;
+            }
+            firstPoint += points;
+        }
+
+        // Write to a temporary file first so a crash never leaves a half-written bake behind
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getByteSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Copy one frame's points into the output frame
+     */
+    public void decode(int tick, ParticleFrame out) {
+        int entry = HEADER_BYTES + tick * FRAME_BYTES;
+        int firstPoint = buffer.getInt(entry);
+        int points = buffer.getInt(entry + 4);
+        int count = buffer.getInt(entry + 8);
+        float spread = buffer.getFloat(entry + 12);
+        out.reset(points);
+
+        int offset = pointsOffset + firstPoint * POINT_BYTES;
+        for (int i = 0; i < points; i++) {
+            out.add(buffer.getShort(offset) * scale, buffer.getShort(offset + 2) * scale,
+                    buffer.getShort(offset + 4) * scale);
+            offset += POINT_BYTES;
+        }
+
+        if (count != 1 || spread != 0) {
+            out.setCluster(count, spread);
+        }
+    }
+
+    private static short quantize(double value, double inverse) {
+        long quantized = Math.round(value * inverse);
+        return (short) Math.max(-Short.MAX_VALUE, Math.min(Short.MAX_VALUE, quantized));
+    }
+}
@@ -0,0 +1,244 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.baked;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.GeometryCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import org.bukkit.Location;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bakes deterministic effect profiles to files under the data folder and hands out
+ * memory-mapped playback generators for them.
+ * <p>
+ * Files are named after a hash of everything that shapes the animation, so changing a
+ * profile's parameters, upgrading the plugin or changing a generator's class simply points it
+ * at a different file.
+ * Baking runs on a background thread; until a profile's bake is ready its effects use the
+ * live generator.
+ */
+public class BakedAnimationStore {
+    private static final String EXTENSION = ".dnpb";
+    private static final int MAX_MAPPED = 256;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    // Hash of each generator's class file, so custom shapes from other plugins invalidate their
+    // bakes when their code changes, whatever this plugin's version is
+    private static final ClassValue<Long> CLASS_HASHES = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return classHash(type);
+        }
+    };
+
+    private final Logger logger;
+    private final File directory;
+    private final String salt;
+    private final long maxFileBytes;
+    private final GeometryCache geometryCache;
+    private final Map<Long, BakedShape> baked = new ConcurrentHashMap<>();
+    private final Set<Long> attempted = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+
+    /**
+     * @param salt mixed into every profile hash; pass the plugin version so shape changes invalidate old bakes
+     * @param retentionDays bakes not used for this many days are deleted on startup; 0 keeps them forever
+     */
+    public BakedAnimationStore(Logger logger, File directory, String salt, long maxFileBytes, int retentionDays,
+                               GeometryCache geometryCache) {
+        this.logger = logger;
+        this.directory = directory;
+        this.salt = salt;
+        this.maxFileBytes = maxFileBytes;
+        this.geometryCache = geometryCache;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DNIPEM-Animation-Baker");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        if (retentionDays > 0) {
+            executor.execute(() -> prune(retentionDays));
+        }
+    }
+
+    /**
+     * Get the generator to play an effect with: the baked animation if one is ready, otherwise the
+     * live generator. Deterministic profiles without a bake are queued for baking.
+     *
+     * @param shapeKey name the generator is registered under
+     */
+    public ShapeGenerator resolve(String shapeKey, ShapeGenerator generator, NPCData npcData) {
+        if (!generator.isDeterministic() || npcData.getDuration() <= 0) {
+            return generator;
+        }
+        if (generator.animationPeriod(npcData) <= 0) {
+            // Never repeats exactly, so no number of frames covers a looping effect
+            return generator;
+        }
+
+        long hash = profileHash(shapeKey, generator, npcData);
+        BakedShape shape = baked.get(hash);
+        if (shape != null) {
+            return shape;
+        }
+
+        if (baked.size() < MAX_MAPPED && attempted.add(hash)) {
+            try {
+                executor.execute(() -> load(hash, generator, npcData));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * Get the number of baked animations currently mapped
+     */
+    public int size() {
+        return baked.size();
+    }
+
+    /**
+     * Get the total size of the currently mapped animations in bytes
+     */
+    public long getMappedBytes() {
+        long bytes = 0;
+        for (BakedShape shape : baked.values()) {
+            bytes += shape.getAnimation().getByteSize();
+        }
+        return bytes;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        baked.clear();
+        attempted.clear();
+    }
+
+    private void load(long hash, ShapeGenerator generator, NPCData npcData) {
+        File file = new File(directory, Long.toHexString(hash) + EXTENSION);
+        Path path = file.toPath();
+
+        try {
+            BakedAnimation animation = BakedAnimation.open(path, hash);
+            if (animation == null) {
+                ActiveEffect scratch = new ActiveEffect(npcData, new Location(null, 0, 0, 0), generator,
+                        geometryCache.get(generator, npcData), new SplittableRandom(hash), null);
+                if (!BakedAnimation.bake(path, hash, generator, scratch, generator.animationPeriod(npcData), maxFileBytes)) {
+                    logger.fine("Not baking " + file.getName() + ": larger than the configured maximum");
+                    return;
+                }
+                animation = BakedAnimation.open(path, hash);
+                if (animation == null) {
+                    logger.warning("Baked animation " + file.getName() + " could not be read back");
+                    return;
+                }
+            } else {
+                // Mark as recently used so pruning keeps it
+                file.setLastModified(System.currentTimeMillis());
+            }
+
+            baked.put(hash, new BakedShape(animation, generator));
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to bake animation " + file.getName(), e);
+        }
+    }
+
+    private void prune(int retentionDays) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION) || name.endsWith(EXTENSION + ".tmp"));
+        if (files == null) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - retentionDays * DAY_MILLIS;
+        int deleted = 0;
+        for (File file : files) {
+            if (file.lastModified() < cutoff && file.delete()) {
+                deleted++;
+            }
+        }
+
+        if (deleted > 0) {
+            logger.info("Deleted " + deleted + " unused baked animation(s)");
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over every parameter that affects the baked frames
+     */
+    private long profileHash(String shapeKey, ShapeGenerator generator, NPCData npcData) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, BakedAnimation.VERSION);
+        hash = mix(hash, salt);
+        hash = mix(hash, shapeKey);
+        hash = mix(hash, generator.getClass().getName());
+        hash = mix(hash, CLASS_HASHES.get(generator.getClass()));
+        hash = mix(hash, npcData.getDensity());
+        hash = mix(hash, Double.doubleToLongBits(npcData.getRadius()));
+        hash = mix(hash, Double.doubleToLongBits(npcData.getHeight()));
+        hash = mix(hash, npcData.getRotations());
+        hash = mix(hash, Double.doubleToLongBits(npcData.getAnimationSpeed()));
+        hash = mix(hash, npcData.getDuration());
+        return hash;
+    }
+
+    /**
+     * FNV-1a over the class file, or 0 for classes without one (lambdas and other hidden classes)
+     */
+    private static long classHash(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return 0;
+        }
+
+        long hash = FNV_OFFSET;
+        try (InputStream in = loader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            if (in == null) {
+                return 0;
+            }
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    hash = (hash ^ (buffer[i] & 0xff)) * 0x100000001b3L;
+                }
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return (hash ^ 0xff) * 0x100000001b3L;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
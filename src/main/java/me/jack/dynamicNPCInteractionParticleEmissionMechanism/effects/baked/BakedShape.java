@@ -0,0 +1,46 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.baked;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Plays a baked animation back instead of generating the shape
+ */
+public final class BakedShape implements ShapeGenerator {
+    private final BakedAnimation animation;
+    private final ShapeGenerator source;
+
+    /**
+     * @param source the live generator the animation was baked from
+     */
+    public BakedShape(BakedAnimation animation, ShapeGenerator source) {
+        this.animation = animation;
+        this.source = source;
+    }
+
+    public BakedAnimation getAnimation() {
+        return animation;
+    }
+
+    @Override
+    public void generate(ActiveEffect effect, int tick, ParticleFrame out) {
+        animation.decode(tick % animation.getFrames(), out);
+    }
+
+    @Override
+    public int animationPeriod(NPCData npcData) {
+        return animation.getFrames();
+    }
+
+    @Override
+    public ShapeGenerator getSource() {
+        return source;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+}
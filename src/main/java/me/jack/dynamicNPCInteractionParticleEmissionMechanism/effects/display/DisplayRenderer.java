@@ -0,0 +1,238 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.display;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.BlockDisplay;
+import org.bukkit.entity.Display;
+import org.bukkit.util.Transformation;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders shapes with a small number of block display entities instead of particles.
+ * The displays are spawned once per effect; static shapes then cost nothing per tick and
+ * rotating shapes send one interpolated transformation update per display every few ticks,
+ * rather than a particle packet per point per viewer per tick.
+ * Must be used from the thread that owns the effects' region (the main thread on Paper).
+ */
+public class DisplayRenderer {
+    private final Logger logger;
+    private final Consumer<ActiveEffect> retireListener;
+    private final List<DisplayEffect> effects = new ArrayList<>();
+    private BlockData block;
+    private float scale;
+    private float viewRange;
+    private int maxEntities;
+    private int updateInterval;
+    private int entityCount;
+
+    /**
+     * @param retireListener called for every effect removed from the renderer
+     */
+    public DisplayRenderer(Logger logger, BlockData block, float scale, float viewRange, int maxEntities,
+                           int updateInterval, Consumer<ActiveEffect> retireListener) {
+        this.logger = logger;
+        this.retireListener = retireListener;
+        configure(block, scale, viewRange, maxEntities, updateInterval);
+    }
+
+    /**
+     * Replace the display settings; running effects keep the displays they were spawned with
+     */
+    public void configure(BlockData block, float scale, float viewRange, int maxEntities, int updateInterval) {
+        this.block = block;
+        this.scale = scale;
+        this.viewRange = viewRange;
+        this.maxEntities = Math.max(1, maxEntities);
+        this.updateInterval = Math.max(1, updateInterval);
+    }
+
+    /**
+     * Check whether an effect's shape can be drawn with displays: it needs precomputed
+     * geometry that is either static or rigidly rotating
+     */
+    public static boolean supports(ActiveEffect effect) {
+        ShapeGeometry geometry = effect.getGeometry();
+        return geometry != null && geometry.size() > 0 && geometry.getMotion() != ShapeGeometry.Motion.PHASE;
+    }
+
+    /**
+     * Spawn the displays for an effect
+     *
+     * @return false if the effect cannot be drawn with displays and should use particles instead
+     */
+    public boolean add(ActiveEffect effect) {
+        World world = effect.getWorld();
+        if (!supports(effect) || world == null
+                || !world.isChunkLoaded((int) Math.floor(effect.getCenterX()) >> 4, (int) Math.floor(effect.getCenterZ()) >> 4)) {
+            return false;
+        }
+
+        ShapeGeometry geometry = effect.getGeometry();
+        int stride = (geometry.size() + maxEntities - 1) / maxEntities;
+        int[] points = new int[(geometry.size() + stride - 1) / stride];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = i * stride;
+        }
+
+        DisplayEffect displayEffect = new DisplayEffect(effect, points);
+        Location center = new Location(world, effect.getCenterX(), effect.getCenterY(), effect.getCenterZ());
+        int tick = effect.getAnimationTick();
+
+        try {
+            for (int i = 0; i < points.length; i++) {
+                Transformation transformation = transformation(geometry, points[i], tick);
+                displayEffect.displays[i] = world.spawn(center, BlockDisplay.class, display -> {
+                    display.setPersistent(false);
+                    display.setBlock(block);
+                    display.setTransformation(transformation);
+                    display.setViewRange(viewRange);
+                    display.setBrightness(new Display.Brightness(15, 15));
+                    display.setShadowRadius(0);
+                });
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not spawn display entities for NPC "
+                    + effect.getNpcData().getNpcUuid() + ", falling back to particles", e);
+            displayEffect.remove();
+            return false;
+        }
+
+        effects.add(displayEffect);
+        entityCount += points.length;
+        return true;
+    }
+
+    /**
+     * Step every display effect by one tick
+     */
+    public void tick() {
+        int i = 0;
+        while (i < effects.size()) {
+            DisplayEffect displayEffect = effects.get(i);
+            ActiveEffect effect = displayEffect.effect;
+            if (effect.isFinished() || !displayEffect.isAlive()) {
+                retire(i);
+                continue;
+            }
+
+            ShapeGeometry geometry = effect.getGeometry();
+            if (geometry.getMotion() == ShapeGeometry.Motion.ROTATE && effect.getTicks() % updateInterval == 0) {
+                // Aim at where the shape will be once the update has interpolated in
+                displayEffect.rotate(effect.getAnimationTick() + updateInterval, updateInterval);
+            }
+            effect.advance();
+            i++;
+        }
+    }
+
+    /**
+     * Get the number of effects currently drawn with displays
+     */
+    public int getEffectCount() {
+        return effects.size();
+    }
+
+    /**
+     * Get the number of display entities currently spawned
+     */
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * Remove every display without notifying the retire listener
+     */
+    public void shutdown() {
+        for (DisplayEffect displayEffect : effects) {
+            displayEffect.remove();
+        }
+        effects.clear();
+        entityCount = 0;
+    }
+
+    private void retire(int index) {
+        DisplayEffect displayEffect = effects.get(index);
+        displayEffect.remove();
+        entityCount -= displayEffect.displays.length;
+
+        // Swap-remove, order does not matter
+        int last = effects.size() - 1;
+        effects.set(index, effects.get(last));
+        effects.remove(last);
+        retireListener.accept(displayEffect.effect);
+    }
+
+    /**
+     * Place a unit block scaled down and centered on the point, rotated with the shape for the given tick
+     */
+    private Transformation transformation(ShapeGeometry geometry, int point, int tick) {
+        double x = geometry.getX()[point];
+        double z = geometry.getZ()[point];
+        if (geometry.getMotion() == ShapeGeometry.Motion.ROTATE) {
+            double cos = geometry.tickCos(tick);
+            double sin = geometry.tickSin(tick);
+            double rotatedX = x * cos - z * sin;
+            z = x * sin + z * cos;
+            x = rotatedX;
+        }
+
+        float half = scale / 2;
+        return new Transformation(
+                new Vector3f((float) x - half, (float) geometry.getY()[point] - half, (float) z - half),
+                new Quaternionf(),
+                new Vector3f(scale, scale, scale),
+                new Quaternionf());
+    }
+
+    private final class DisplayEffect {
+        private final ActiveEffect effect;
+        private final int[] points;
+        private final BlockDisplay[] displays;
+
+        private DisplayEffect(ActiveEffect effect, int[] points) {
+            this.effect = effect;
+            this.points = points;
+            this.displays = new BlockDisplay[points.length];
+        }
+
+        private void rotate(int tick, int duration) {
+            ShapeGeometry geometry = effect.getGeometry();
+            for (int i = 0; i < displays.length; i++) {
+                BlockDisplay display = displays[i];
+                display.setInterpolationDelay(0);
+                display.setInterpolationDuration(duration);
+                display.setTransformation(transformation(geometry, points[i], tick));
+            }
+        }
+
+        /**
+         * Displays are not persistent, so unloading their chunk removes them; treat that as the end of the effect
+         */
+        private boolean isAlive() {
+            for (BlockDisplay display : displays) {
+                if (display == null || !display.isValid()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void remove() {
+            for (BlockDisplay display : displays) {
+                if (display != null && display.isValid()) {
+                    display.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Outline of a box with half-width radius and the profile's height
+ */
+public final class BoxShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        double size = npcData.getRadius();
+        double height = npcData.getHeight();
+        int particlesPerEdge = npcData.getDensity() / 12;
+        int points = (particlesPerEdge + 1) * 12;
+        double[] x = new double[points];
+        double[] y = new double[points];
+        double[] z = new double[points];
+
+        int index = 0;
+        for (int i = 0; i <= particlesPerEdge; i++) {
+            double t = particlesPerEdge == 0 ? 0 : (double) i / particlesPerEdge;
+            double along = -size + 2 * size * t;
+
+            // Bottom square
+            index = put(x, y, z, index, along, 0, -size);
+            index = put(x, y, z, index, along, 0, size);
+            index = put(x, y, z, index, -size, 0, along);
+            index = put(x, y, z, index, size, 0, along);
+
+            // Top square
+            index = put(x, y, z, index, along, height, -size);
+            index = put(x, y, z, index, along, height, size);
+            index = put(x, y, z, index, -size, height, along);
+            index = put(x, y, z, index, size, height, along);
+
+            // Vertical edges
+            index = put(x, y, z, index, -size, height * t, -size);
+            index = put(x, y, z, index, -size, height * t, size);
+            index = put(x, y, z, index, size, height * t, -size);
+            index = put(x, y, z, index, size, height * t, size);
+        }
+        return ShapeGeometry.fixed(x, y, z);
+    }
+
+    private static int put(double[] x, double[] y, double[] z, int index, double px, double py, double pz) {
+        x[index] = px;
+        y[index] = py;
+        z[index] = pz;
+        return index + 1;
+    }
+}
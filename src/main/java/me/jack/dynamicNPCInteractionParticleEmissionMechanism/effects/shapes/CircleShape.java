@@ -0,0 +1,32 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Flat circle one block above the center, rotating rotations times over the effect's duration
+ */
+public final class CircleShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity();
+        double[] x = new double[particles];
+        double[] y = new double[particles];
+        double[] z = new double[particles];
+
+        for (int i = 0; i < particles; i++) {
+            double angle = 2 * Math.PI * i / particles;
+            x[i] = npcData.getRadius() * Math.cos(angle);
+            y[i] = 1;
+            z[i] = npcData.getRadius() * Math.sin(angle);
+        }
+
+        return ShapeGeometry.rotating(x, y, z, radiansPerTick(npcData), animationPeriod(npcData));
+    }
+
+    @Override
+    protected double radiansPerTick(NPCData npcData) {
+        return npcData.getAnimationSpeed() * npcData.getRotations() * 2 * Math.PI / npcData.getDuration();
+    }
+}
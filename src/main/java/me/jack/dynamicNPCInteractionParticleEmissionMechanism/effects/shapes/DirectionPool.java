@@ -0,0 +1,57 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fixed table of unit vectors uniformly distributed over the sphere.
+ * Random shapes can pick directions from it with a single random index instead of
+ * two random numbers and four trig calls per particle.
+ */
+public final class DirectionPool {
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    private DirectionPool(double[] x, double[] y, double[] z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Build a pool of the given size; the same seed always produces the same directions
+     */
+    public static DirectionPool create(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            double theta = 2 * Math.PI * random.nextDouble();
+            double cosPhi = 2 * random.nextDouble() - 1;
+            double sinPhi = Math.sqrt(1 - cosPhi * cosPhi);
+
+            x[i] = sinPhi * Math.cos(theta);
+            y[i] = sinPhi * Math.sin(theta);
+            z[i] = cosPhi;
+        }
+        return new DirectionPool(x, y, z);
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getZ(int index) {
+        return z[index];
+    }
+}
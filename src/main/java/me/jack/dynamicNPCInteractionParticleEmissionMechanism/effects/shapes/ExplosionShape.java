@@ -0,0 +1,53 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+import java.util.SplittableRandom;
+
+/**
+ * Burst of randomly directed particles whose radius grows over the effect's duration.
+ * Randomness comes from the effect's own generator, so effects are reproducible from a seed
+ * and generator threads never contend on a shared Random.
+ */
+public final class ExplosionShape implements ShapeGenerator {
+    private final DirectionPool directions;
+
+    /**
+     * @param directions precomputed directions to sample from, or null to draw fresh directions
+     */
+    public ExplosionShape(DirectionPool directions) {
+        this.directions = directions;
+    }
+
+    @Override
+    public void generate(ActiveEffect effect, int tick, ParticleFrame out) {
+        NPCData npcData = effect.getNpcData();
+        SplittableRandom random = effect.getRandom();
+        int particles = npcData.getDensity();
+        double progress = (double) tick / npcData.getDuration();
+        double radius = npcData.getRadius() * progress;
+        out.reset(particles);
+
+        if (directions != null) {
+            int size = directions.size();
+            for (int i = 0; i < particles; i++) {
+                int index = random.nextInt(size);
+                out.add(radius * directions.getX(index), 1 + radius * directions.getY(index), radius * directions.getZ(index));
+            }
+            return;
+        }
+
+        for (int i = 0; i < particles; i++) {
+            double theta = 2 * Math.PI * random.nextDouble();
+            double phi = Math.acos(2 * random.nextDouble() - 1);
+
+            double x = radius * Math.sin(phi) * Math.cos(theta);
+            double y = radius * Math.sin(phi) * Math.sin(theta);
+            double z = radius * Math.cos(phi);
+
+            out.add(x, 1 + y, z);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Base for shapes whose points can be precomputed once per profile.
+ * The geometry is built through the engine's geometry cache and each tick only applies
+ * its rotation or phase transform.
+ */
+public abstract class GeometryShapeGenerator implements ShapeGenerator {
+
+    /**
+     * Build the precomputed geometry for a profile; called once per distinct set of parameters
+     */
+    public abstract ShapeGeometry createGeometry(NPCData npcData);
+
+    @Override
+    public void generate(ActiveEffect effect, int tick, ParticleFrame out) {
+        ShapeGeometry geometry = effect.getGeometry();
+        double[] xs = geometry.getX();
+        double[] ys = geometry.getY();
+        double[] zs = geometry.getZ();
+        int points = geometry.size();
+        out.reset(points);
+
+        switch (geometry.getMotion()) {
+            case ROTATE: {
+                double cos = geometry.tickCos(tick);
+                double sin = geometry.tickSin(tick);
+                for (int i = 0; i < points; i++) {
+                    out.add(xs[i] * cos - zs[i] * sin, ys[i], xs[i] * sin + zs[i] * cos);
+                }
+                break;
+            }
+            case PHASE: {
+                double cos = geometry.tickCos(tick);
+                double sin = geometry.tickSin(tick);
+                double[] phaseSin = geometry.getPhaseSin();
+                double[] phaseCos = geometry.getPhaseCos();
+                for (int i = 0; i < points; i++) {
+                    out.add(xs[i], ys[i] + phaseSin[i] * cos + phaseCos[i] * sin, zs[i]);
+                }
+                break;
+            }
+            default:
+                for (int i = 0; i < points; i++) {
+                    out.add(xs[i], ys[i], zs[i]);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * Angular speed of the rotation or phase transform; 0 for shapes that do not move
+     */
+    protected double radiansPerTick(NPCData npcData) {
+        return 0;
+    }
+
+    @Override
+    public int animationPeriod(NPCData npcData) {
+        return ShapeGeometry.period(radiansPerTick(npcData), npcData.getDuration());
+    }
+
+    /**
+     * Rotation of animationSpeed * spinRate degrees per tick
+     */
+    protected static double degreesPerTick(NPCData npcData, double spinRate) {
+        return npcData.getAnimationSpeed() * spinRate * Math.PI / 180.0;
+    }
+}
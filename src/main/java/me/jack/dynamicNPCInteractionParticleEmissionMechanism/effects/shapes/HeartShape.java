@@ -0,0 +1,32 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Parametric heart in the XY plane
+ */
+public final class HeartShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity();
+        double scale = npcData.getRadius() / 20.0;
+        double[] x = new double[particles];
+        double[] y = new double[particles];
+        double[] z = new double[particles];
+
+        for (int i = 0; i < particles; i++) {
+            double t = (2 * Math.PI * i / particles);
+            double sin = Math.sin(t);
+
+            // Parametric heart shape
+            double heartX = 16 * sin * sin * sin;
+            double heartY = 13 * Math.cos(t) - 5 * Math.cos(2 * t) - 2 * Math.cos(3 * t) - Math.cos(4 * t);
+
+            x[i] = heartX * scale;
+            y[i] = 1 + heartY * scale;
+        }
+        return ShapeGeometry.fixed(x, y, z);
+    }
+}
@@ -0,0 +1,42 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Two intertwined strands offset by 180 degrees
+ */
+public final class HelixShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity() / 2;
+        double heightStep = npcData.getHeight() / particles;
+        double[] x = new double[particles * 2];
+        double[] y = new double[particles * 2];
+        double[] z = new double[particles * 2];
+
+        for (int i = 0; i < particles; i++) {
+            double angle = 2 * Math.PI * i / particles;
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+
+            // First helix
+            x[2 * i] = npcData.getRadius() * cos;
+            y[2 * i] = i * heightStep;
+            z[2 * i] = npcData.getRadius() * sin;
+
+            // Second helix (offset by 180 degrees)
+            x[2 * i + 1] = -npcData.getRadius() * cos;
+            y[2 * i + 1] = i * heightStep;
+            z[2 * i + 1] = -npcData.getRadius() * sin;
+        }
+
+        return ShapeGeometry.rotating(x, y, z, radiansPerTick(npcData), animationPeriod(npcData));
+    }
+
+    @Override
+    protected double radiansPerTick(NPCData npcData) {
+        return degreesPerTick(npcData, 1.0);
+    }
+}
@@ -0,0 +1,23 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+
+/**
+ * Single cluster of density particles at the center
+ */
+public final class PointShape implements ShapeGenerator {
+    private static final double SPREAD = 0.1;
+
+    @Override
+    public void generate(ActiveEffect effect, int tick, ParticleFrame out) {
+        out.reset(1);
+        out.add(0, 0, 0);
+        out.setCluster(effect.getNpcData().getDensity(), SPREAD);
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+}
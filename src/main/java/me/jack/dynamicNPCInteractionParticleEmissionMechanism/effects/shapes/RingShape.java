@@ -0,0 +1,26 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Static flat ring at the profile's height
+ */
+public final class RingShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity();
+        double[] x = new double[particles];
+        double[] y = new double[particles];
+        double[] z = new double[particles];
+
+        for (int i = 0; i < particles; i++) {
+            double angle = 2 * Math.PI * i / particles;
+            x[i] = npcData.getRadius() * Math.cos(angle);
+            y[i] = npcData.getHeight();
+            z[i] = npcData.getRadius() * Math.sin(angle);
+        }
+        return ShapeGeometry.fixed(x, y, z);
+    }
+}
@@ -0,0 +1,45 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleFrame;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Produces the points of a particle shape for one animation tick.
+ * Implementations are called from frame generator threads as well as the main thread,
+ * so they must be stateless or otherwise thread-safe, and must not call the Bukkit API.
+ * Register custom shapes through {@link ShapeRegistry}.
+ */
+public interface ShapeGenerator {
+
+    /**
+     * Write the center-relative points for the given animation tick into the frame.
+     * Implementations must call {@link ParticleFrame#reset(int)} before adding points.
+     */
+    void generate(ActiveEffect effect, int tick, ParticleFrame out);
+
+    /**
+     * Whether the points depend only on the NPC's profile and the tick, never on randomness or
+     * external state. Only deterministic shapes are baked and have their frames reused.
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+
+    /**
+     * Number of ticks after which the animation repeats exactly, or 0 if it never does; the tick
+     * passed to {@link #generate} wraps around at this length and keeps counting up otherwise.
+     * Defaults to the NPC's duration.
+     */
+    default int animationPeriod(NPCData npcData) {
+        return npcData.getDuration();
+    }
+
+    /**
+     * The generator whose animation this one plays; itself unless this is a playback copy.
+     * Frames are cached under the source, so a copy and the original share them.
+     */
+    default ShapeGenerator getSource() {
+        return this;
+    }
+}
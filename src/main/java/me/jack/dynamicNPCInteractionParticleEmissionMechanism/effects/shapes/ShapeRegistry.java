@@ -0,0 +1,79 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps shape names to generators. Built-in shapes are registered under their
+ * {@link ParticleShape} names; other plugins can add their own names or replace a built-in.
+ */
+public class ShapeRegistry {
+    private final Map<String, ShapeGenerator> generators = new ConcurrentHashMap<>();
+    private final Set<String> names = Collections.unmodifiableSet(generators.keySet());
+
+    /**
+     * @param explosionDirections direction pool for the built-in EXPLOSION shape, or null to draw fresh directions
+     */
+    public ShapeRegistry(DirectionPool explosionDirections) {
+        register(ParticleShape.CIRCLE.name(), new CircleShape());
+        register(ParticleShape.BOX.name(), new BoxShape());
+        register(ParticleShape.SPHERE.name(), new SphereShape());
+        register(ParticleShape.SPIRAL.name(), new SpiralShape(1.0, 1.0));
+        register(ParticleShape.HELIX.name(), new HelixShape());
+        register(ParticleShape.WAVE.name(), new WaveShape());
+        register(ParticleShape.HEART.name(), new HeartShape());
+        register(ParticleShape.RING.name(), new RingShape());
+        register(ParticleShape.TORNADO.name(), new SpiralShape(2.0, 5.0));
+        register(ParticleShape.EXPLOSION.name(), new ExplosionShape(explosionDirections));
+        register(ParticleShape.POINT.name(), new PointShape());
+    }
+
+    /**
+     * Register a generator under a name, replacing any existing generator with that name.
+     * Names are case-insensitive.
+     */
+    public void register(String name, ShapeGenerator generator) {
+        generators.put(normalize(name), generator);
+    }
+
+    /**
+     * Remove a custom generator; built-in names fall back to CIRCLE until re-registered
+     */
+    public void unregister(String name) {
+        generators.remove(normalize(name));
+    }
+
+    /**
+     * Get the generator registered under a name, or null if there is none
+     */
+    public ShapeGenerator get(String name) {
+        return generators.get(normalize(name));
+    }
+
+    /**
+     * Get the generator for a built-in shape, falling back to CIRCLE
+     */
+    public ShapeGenerator get(ParticleShape shape) {
+        ShapeGenerator generator = generators.get(shape.name());
+        if (generator == null) {
+            generator = generators.get(ParticleShape.CIRCLE.name());
+        }
+        return generator;
+    }
+
+    /**
+     * Live view of all registered names
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    private static String normalize(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+}
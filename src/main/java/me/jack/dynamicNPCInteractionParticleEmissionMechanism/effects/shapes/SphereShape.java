@@ -0,0 +1,30 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Evenly covered sphere using a golden-angle (Fibonacci) point distribution
+ */
+public final class SphereShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity();
+        double phi = Math.PI * (3.0 - Math.sqrt(5.0)); // golden angle
+        double[] x = new double[particles];
+        double[] y = new double[particles];
+        double[] z = new double[particles];
+
+        for (int i = 0; i < particles; i++) {
+            double unitY = particles > 1 ? 1 - (i / (double) (particles - 1)) * 2 : 0;
+            double radiusAtY = Math.sqrt(1 - unitY * unitY);
+            double theta = phi * i;
+
+            x[i] = Math.cos(theta) * radiusAtY * npcData.getRadius();
+            y[i] = 1 + unitY * npcData.getRadius();
+            z[i] = Math.sin(theta) * radiusAtY * npcData.getRadius();
+        }
+        return ShapeGeometry.fixed(x, y, z);
+    }
+}
@@ -0,0 +1,43 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Ascending spiral that narrows towards the top. Also used for TORNADO,
+ * which winds twice as tightly and spins five times as fast.
+ */
+public final class SpiralShape extends GeometryShapeGenerator {
+    private final double turnsPerRotation;
+    private final double spinRate;
+
+    public SpiralShape(double turnsPerRotation, double spinRate) {
+        this.turnsPerRotation = turnsPerRotation;
+        this.spinRate = spinRate;
+    }
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity();
+        double winding = npcData.getRotations() * turnsPerRotation * 2 * Math.PI;
+        double heightStep = npcData.getHeight() / particles;
+        double[] x = new double[particles];
+        double[] y = new double[particles];
+        double[] z = new double[particles];
+
+        for (int i = 0; i < particles; i++) {
+            double angle = winding * i / particles;
+            double radius = npcData.getRadius() * (1 - (double) i / particles);
+            x[i] = radius * Math.cos(angle);
+            y[i] = i * heightStep;
+            z[i] = radius * Math.sin(angle);
+        }
+
+        return ShapeGeometry.rotating(x, y, z, radiansPerTick(npcData), animationPeriod(npcData));
+    }
+
+    @Override
+    protected double radiansPerTick(NPCData npcData) {
+        return degreesPerTick(npcData, spinRate);
+    }
+}
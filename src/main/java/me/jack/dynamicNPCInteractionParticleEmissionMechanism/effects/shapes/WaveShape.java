@@ -0,0 +1,38 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ShapeGeometry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+
+/**
+ * Travelling sine wave along the X axis
+ */
+public final class WaveShape extends GeometryShapeGenerator {
+
+    @Override
+    public ShapeGeometry createGeometry(NPCData npcData) {
+        int particles = npcData.getDensity();
+        double width = npcData.getRadius() * 2;
+        double amplitude = npcData.getHeight() / 2;
+        double[] x = new double[particles];
+        double[] y = new double[particles];
+        double[] z = new double[particles];
+        double[] phaseSin = new double[particles];
+        double[] phaseCos = new double[particles];
+
+        for (int i = 0; i < particles; i++) {
+            double phase = npcData.getRotations() * 2 * Math.PI * i / particles;
+            x[i] = -width / 2 + (width * i / particles);
+            y[i] = 1;
+            phaseSin[i] = Math.sin(phase) * amplitude;
+            phaseCos[i] = Math.cos(phase) * amplitude;
+        }
+
+        return ShapeGeometry.phased(x, y, z, phaseSin, phaseCos, radiansPerTick(npcData),
+                animationPeriod(npcData));
+    }
+
+    @Override
+    protected double radiansPerTick(NPCData npcData) {
+        return degreesPerTick(npcData, 1.0);
+    }
+}
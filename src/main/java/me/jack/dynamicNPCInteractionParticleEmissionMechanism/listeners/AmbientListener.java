@@ -0,0 +1,40 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.AmbientEffectManager;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+public class AmbientListener implements Listener {
+    private final AmbientEffectManager ambientEffectManager;
+
+    public AmbientListener(AmbientEffectManager ambientEffectManager) {
+        this.ambientEffectManager = ambientEffectManager;
+    }
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        ambientEffectManager.onChunkLoad(event.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        ambientEffectManager.onChunkUnload(event.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        ambientEffectManager.onWorldLoad(event.getWorld());
+    }
+
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        ambientEffectManager.onWorldUnload(event.getWorld());
+    }
+}
@@ -0,0 +1,38 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.NPCManager;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Loads and drops NPCs with their chunks when lazy loading is enabled
+ */
+public class NPCChunkListener implements Listener {
+    private final NPCManager npcManager;
+
+    public NPCChunkListener(NPCManager npcManager) {
+        this.npcManager = npcManager;
+    }
+
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        npcManager.onChunkLoad(event.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        npcManager.onChunkUnload(event.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        npcManager.onWorldUnload(event.getWorld());
+    }
+}
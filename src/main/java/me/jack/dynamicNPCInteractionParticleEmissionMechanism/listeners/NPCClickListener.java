@@ -4,6 +4,9 @@ import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.NPCManage
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.ParticleEffectManager;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TriggerMode;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.PlatformScheduler;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.RayTraceUtil;
 import org.bukkit.Location;
 import org.bukkit.entity.Entity;
@@ -11,28 +14,52 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.EquipmentSlot;
 
 public class NPCClickListener implements Listener {
     private final NPCManager npcManager;
     private final ParticleEffectManager particleEffectManager;
+    private final ConfigManager configManager;
+    private final PlatformScheduler scheduler;
 
-    public NPCClickListener(NPCManager npcManager, ParticleEffectManager particleEffectManager) {
+    public NPCClickListener(NPCManager npcManager, ParticleEffectManager particleEffectManager, ConfigManager configManager,
+                            PlatformScheduler scheduler) {
         this.npcManager = npcManager;
         this.particleEffectManager = particleEffectManager;
+        this.configManager = configManager;
+        this.scheduler = scheduler;
     }
 
     @EventHandler
     public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
+        // The event fires once per hand; only react to the main hand
+        if (event.getHand() != EquipmentSlot.HAND) {
+            return;
+        }
+
         Player player = event.getPlayer();
         Entity clickedEntity = event.getRightClicked();
 
-        // Check if the clicked entity is registered
-        if (!npcManager.isRegistered(clickedEntity.getUniqueId())) {
+        NPCData npcData = npcManager.getNPC(clickedEntity.getUniqueId());
+        if (npcData != null) {
+            trigger(player, clickedEntity, npcData);
+        } else if (npcManager.isLazyLoading()) {
+            // The NPC's chunk may still be loading; resolve it and come back on the entity's thread
+            npcManager.resolveNPC(clickedEntity).thenAccept(resolved -> {
+                if (resolved != null) {
+                    scheduler.runAtEntity(clickedEntity, () -> trigger(player, clickedEntity, resolved));
+                }
+            });
+        }
+    }
+
+    private void trigger(Player player, Entity clickedEntity, NPCData npcData) {
+        if (configManager.getTriggerMode(npcData.getNpcUuid()) == TriggerMode.PROXIMITY) {
             return;
         }
 
-        NPCData npcData = npcManager.getNPC(clickedEntity.getUniqueId());
-        if (npcData == null) {
+        if (!particleEffectManager.tryAcquireClick(player.getUniqueId())) {
             return;
         }
 
@@ -48,4 +75,9 @@ public class NPCClickListener implements Listener {
         // Spawn the particle effect
         particleEffectManager.spawnEffect(npcData, targetLocation);
     }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        particleEffectManager.forgetPlayer(event.getPlayer().getUniqueId());
+    }
 }
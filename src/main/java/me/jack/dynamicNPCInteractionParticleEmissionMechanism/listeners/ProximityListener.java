@@ -0,0 +1,32 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.listeners;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers.ProximityTriggerManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+public class ProximityListener implements Listener {
+    private final ProximityTriggerManager proximityTriggerManager;
+
+    public ProximityListener(ProximityTriggerManager proximityTriggerManager) {
+        this.proximityTriggerManager = proximityTriggerManager;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        proximityTriggerManager.onMove(event.getPlayer().getUniqueId(), event.getFrom(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        proximityTriggerManager.onMove(event.getPlayer().getUniqueId(), event.getFrom(), event.getTo());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        proximityTriggerManager.forgetPlayer(event.getPlayer().getUniqueId());
+    }
+}
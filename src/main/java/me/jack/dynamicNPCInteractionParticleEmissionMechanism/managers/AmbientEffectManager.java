@@ -0,0 +1,491 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.LongObjectHashMap;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.PlatformScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Idle looping effects for NPCs with ambient effects enabled. NPCs are indexed by chunk and only
+ * armed while their chunk is loaded; a single periodic check starts the loop of an armed NPC
+ * when a player comes within the activation distance and suspends it when the last one leaves.
+ * Loops resume at the phase given by a shared tick count, so they never restart visibly.
+ * The index follows the NPC registry one NPC at a time: each check only revisits the NPCs that
+ * changed since the last one, so unrelated loops keep running. Players are bucketed by chunk for
+ * each check, so finding one near an NPC only looks at the chunks within the activation distance.
+ * All state lives on the global region thread (the main thread on Paper); chunk events from
+ * region threads are handed over to it. On Folia the global region may not read players, so
+ * each check asks every player's own scheduler for its position and the next check uses those
+ * samples, one interval old.
+ */
+public class AmbientEffectManager {
+    private final PlatformScheduler scheduler;
+    private final NPCManager npcManager;
+    private final ParticleEffectManager particleEffectManager;
+    private final ConfigManager configManager;
+    private final Map<UUID, AmbientSlot> slots = new HashMap<>();
+    private final Map<UUID, Map<Long, List<AmbientSlot>>> slotsByWorld = new HashMap<>();
+    private final List<AmbientSlot> armed = new ArrayList<>();
+    // NPCs cached, replaced or evicted since the last check, recorded by whichever thread changed them
+    private final Queue<UUID> changedNPCs = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, PlayerGrid> playerGrids = new HashMap<>();
+    // Folia only: positions written by each player's own thread
+    private final Map<UUID, PlayerSample> playerSamples = new ConcurrentHashMap<>();
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private ScheduledTask checkTask;
+    private boolean resyncNeeded = true;
+    private long phaseTicks;
+    private long checkInterval;
+    private int runningCount;
+
+    public AmbientEffectManager(JavaPlugin plugin, NPCManager npcManager,
+                                ParticleEffectManager particleEffectManager, ConfigManager configManager) {
+        this.scheduler = new PlatformScheduler(plugin);
+        this.npcManager = npcManager;
+        this.particleEffectManager = particleEffectManager;
+        this.configManager = configManager;
+        npcManager.addChangeListener(changedNPCs::add);
+    }
+
+    /**
+     * Start the shared proximity check
+     */
+    public void start() {
+        if (checkTask != null) {
+            return;
+        }
+
+        long interval = configManager.getAmbientCheckInterval();
+        checkInterval = interval;
+        checkTask = scheduler.runGlobalTimer(() -> {
+            phaseTicks += interval;
+            check();
+        }, interval, interval);
+    }
+
+    /**
+     * Rebuild the index and restart the check with the current configuration
+     */
+    public void reload() {
+        scheduler.runGlobal(() -> {
+            shutdown();
+            start();
+        });
+    }
+
+    /**
+     * Stop the check and every running ambient loop
+     */
+    public void shutdown() {
+        if (checkTask != null) {
+            checkTask.cancel();
+            checkTask = null;
+        }
+
+        clearIndex();
+        resyncNeeded = true;
+    }
+
+    /**
+     * Arm the ambient NPCs in a chunk that has just loaded
+     */
+    public void onChunkLoad(World world, int chunkX, int chunkZ) {
+        scheduler.runGlobal(() -> armChunk(world, chunkX, chunkZ));
+    }
+
+    /**
+     * Suspend and disarm the ambient NPCs in a chunk that is unloading
+     */
+    public void onChunkUnload(World world, int chunkX, int chunkZ) {
+        scheduler.runGlobal(() -> disarmChunk(world, chunkX, chunkZ));
+    }
+
+    private void armChunk(World world, int chunkX, int chunkZ) {
+        List<AmbientSlot> slots = slotsAt(world, chunkX, chunkZ);
+        if (slots != null) {
+            for (AmbientSlot slot : slots) {
+                arm(slot);
+            }
+        }
+    }
+
+    private void disarmChunk(World world, int chunkX, int chunkZ) {
+        List<AmbientSlot> slots = slotsAt(world, chunkX, chunkZ);
+        if (slots != null) {
+            for (AmbientSlot slot : slots) {
+                disarm(slot);
+            }
+        }
+    }
+
+    /**
+     * Revisit every NPC once a world loads, since NPCs in worlds that were missing could not be placed
+     */
+    public void onWorldLoad(World world) {
+        scheduler.runGlobal(() -> resyncNeeded = true);
+    }
+
+    /**
+     * Drop the ambient NPCs of a world that is unloading
+     */
+    public void onWorldUnload(World world) {
+        scheduler.runGlobal(() -> disarmWorld(world));
+    }
+
+    private void disarmWorld(World world) {
+        Map<Long, List<AmbientSlot>> chunks = slotsByWorld.get(world.getUID());
+        if (chunks == null) {
+            return;
+        }
+        for (List<AmbientSlot> slots : chunks.values()) {
+            for (AmbientSlot slot : slots) {
+                disarm(slot);
+            }
+        }
+    }
+
+    /**
+     * Start or suspend the loops of armed NPCs depending on whether a player is close enough
+     */
+    private void check() {
+        if (resyncNeeded) {
+            resyncAll();
+        } else {
+            UUID npcUuid;
+            while ((npcUuid = changedNPCs.poll()) != null) {
+                sync(npcUuid);
+            }
+        }
+        if (armed.isEmpty()) {
+            return;
+        }
+
+        double distance = configManager.getAmbientActivationDistance();
+        for (PlayerGrid grid : playerGrids.values()) {
+            grid.clear();
+        }
+        if (PlatformScheduler.isFolia()) {
+            collectSamples();
+            requestSamples();
+        } else {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                Location location = player.getLocation(scratch);
+                gridOf(location.getWorld().getUID()).add(location.getX(), location.getY(), location.getZ());
+            }
+        }
+
+        for (AmbientSlot slot : armed) {
+            if (slot.effect != null && slot.effect.isFinished()) {
+                slot.effect = null;
+                runningCount--;
+            }
+
+            PlayerGrid grid = playerGrids.get(slot.worldId);
+            boolean watched = grid != null && grid.anyWithin(slot.location, distance);
+            if (watched && slot.effect == null) {
+                slot.effect = particleEffectManager.startAmbientEffect(slot.npcData, slot.location, phaseTicks);
+                if (slot.effect != null) {
+                    runningCount++;
+                }
+            } else if (!watched && slot.effect != null) {
+                suspend(slot);
+            }
+        }
+    }
+
+    /**
+     * Ask every player's own scheduler to record where the player is
+     */
+    private void requestSamples() {
+        long phase = phaseTicks;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            scheduler.runAtEntity(player, () -> {
+                Location location = player.getLocation();
+                playerSamples.put(player.getUniqueId(), new PlayerSample(location.getWorld().getUID(),
+                        location.getX(), location.getY(), location.getZ(), phase));
+            });
+        }
+    }
+
+    /**
+     * Bucket the recent samples by world and chunk, dropping those of players who stopped answering
+     */
+    private void collectSamples() {
+        long oldest = phaseTicks - 2 * checkInterval;
+        playerSamples.values().removeIf(sample -> sample.phase < oldest);
+        for (PlayerSample sample : playerSamples.values()) {
+            gridOf(sample.worldId).add(sample.x, sample.y, sample.z);
+        }
+    }
+
+    private PlayerGrid gridOf(UUID worldId) {
+        PlayerGrid grid = playerGrids.get(worldId);
+        if (grid == null) {
+            grid = new PlayerGrid();
+            playerGrids.put(worldId, grid);
+        }
+        return grid;
+    }
+
+    /**
+     * Revisit every registered NPC and drop the slots of NPCs that are gone; loops of NPCs whose
+     * data did not change keep running
+     */
+    private void resyncAll() {
+        resyncNeeded = false;
+        // Changes made during the scan are queued again, so none is lost
+        changedNPCs.clear();
+        Map<UUID, NPCData> npcs = npcManager.getAllNPCs();
+        for (UUID npcUuid : new ArrayList<>(slots.keySet())) {
+            if (!npcs.containsKey(npcUuid)) {
+                sync(npcUuid);
+            }
+        }
+        for (UUID npcUuid : npcs.keySet()) {
+            sync(npcUuid);
+        }
+    }
+
+    /**
+     * Bring one NPC's slot in line with the registry. A slot is only replaced when the NPC's data
+     * was, so its running loop picks up the new settings; otherwise it is left alone.
+     */
+    private void sync(UUID npcUuid) {
+        NPCData npcData = npcManager.getNPC(npcUuid);
+        AmbientSlot slot = slots.get(npcUuid);
+        if (slot != null && slot.npcData == npcData) {
+            return;
+        }
+        if (slot != null) {
+            removeSlot(slot);
+        }
+        if (npcData != null) {
+            addSlot(npcData);
+        }
+    }
+
+    private void addSlot(NPCData npcData) {
+        Location location = npcData.getLocation();
+        World world = location.getWorld();
+        if (world == null || npcData.getDuration() <= 0 || !configManager.isAmbientEnabled(npcData.getNpcUuid())) {
+            return;
+        }
+
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        AmbientSlot slot = new AmbientSlot(npcData, location, world.getUID(), NPCSpatialIndex.chunkKey(chunkX, chunkZ));
+        slots.put(npcData.getNpcUuid(), slot);
+        slotsByWorld.computeIfAbsent(slot.worldId, uid -> new HashMap<>())
+                .computeIfAbsent(slot.chunkKey, key -> new ArrayList<>(1))
+                .add(slot);
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            arm(slot);
+        }
+    }
+
+    private void removeSlot(AmbientSlot slot) {
+        disarm(slot);
+        slots.remove(slot.npcData.getNpcUuid());
+        Map<Long, List<AmbientSlot>> chunks = slotsByWorld.get(slot.worldId);
+        List<AmbientSlot> chunkSlots = chunks != null ? chunks.get(slot.chunkKey) : null;
+        if (chunkSlots != null) {
+            chunkSlots.remove(slot);
+            if (chunkSlots.isEmpty()) {
+                chunks.remove(slot.chunkKey);
+            }
+        }
+    }
+
+    private void clearIndex() {
+        for (AmbientSlot slot : armed) {
+            if (slot.effect != null) {
+                slot.effect.cancel();
+                slot.effect = null;
+            }
+        }
+        armed.clear();
+        slots.clear();
+        slotsByWorld.clear();
+        playerSamples.clear();
+        playerGrids.clear();
+        runningCount = 0;
+    }
+
+    private List<AmbientSlot> slotsAt(World world, int chunkX, int chunkZ) {
+        Map<Long, List<AmbientSlot>> chunks = slotsByWorld.get(world.getUID());
+        return chunks != null ? chunks.get(NPCSpatialIndex.chunkKey(chunkX, chunkZ)) : null;
+    }
+
+    private void arm(AmbientSlot slot) {
+        if (slot.armedIndex < 0) {
+            slot.armedIndex = armed.size();
+            armed.add(slot);
+        }
+    }
+
+    private void disarm(AmbientSlot slot) {
+        int index = slot.armedIndex;
+        if (index < 0) {
+            return;
+        }
+
+        if (slot.effect != null) {
+            suspend(slot);
+        }
+        // Swap-remove keeps disarming O(1) when whole regions unload at once
+        AmbientSlot last = armed.remove(armed.size() - 1);
+        if (last != slot) {
+            armed.set(index, last);
+            last.armedIndex = index;
+        }
+        slot.armedIndex = -1;
+    }
+
+    private void suspend(AmbientSlot slot) {
+        slot.effect.cancel();
+        slot.effect = null;
+        runningCount--;
+    }
+
+    /**
+     * Get the number of NPCs with ambient effects enabled
+     */
+    public int getAmbientNpcCount() {
+        return slots.size();
+    }
+
+    /**
+     * Get the number of ambient NPCs whose chunk is loaded
+     */
+    public int getArmedCount() {
+        return armed.size();
+    }
+
+    /**
+     * Get the number of ambient loops currently running near players
+     */
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    private static final class AmbientSlot {
+        private final NPCData npcData;
+        private final Location location;
+        private final UUID worldId;
+        private final long chunkKey;
+        private ActiveEffect effect;
+        private int armedIndex = -1;
+
+        private AmbientSlot(NPCData npcData, Location location, UUID worldId, long chunkKey) {
+            this.npcData = npcData;
+            this.location = location;
+            this.worldId = worldId;
+            this.chunkKey = chunkKey;
+        }
+    }
+
+    /**
+     * Player positions of one world for the current check, bucketed by chunk
+     */
+    private static final class PlayerGrid {
+        private final LongObjectHashMap<PlayerCell> cells = new LongObjectHashMap<>(16);
+
+        private void add(double x, double y, double z) {
+            long key = NPCSpatialIndex.chunkKey((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4);
+            PlayerCell cell = cells.get(key);
+            if (cell == null) {
+                cell = new PlayerCell();
+                cells.put(key, cell);
+            }
+            cell.add(x, y, z);
+        }
+
+        /**
+         * Check whether any player is within distance blocks of the location
+         */
+        private boolean anyWithin(Location location, double distance) {
+            double x = location.getX();
+            double y = location.getY();
+            double z = location.getZ();
+            double distanceSquared = distance * distance;
+            int minChunkX = (int) Math.floor(x - distance) >> 4;
+            int maxChunkX = (int) Math.floor(x + distance) >> 4;
+            int minChunkZ = (int) Math.floor(z - distance) >> 4;
+            int maxChunkZ = (int) Math.floor(z + distance) >> 4;
+
+            // With fewer occupied chunks than chunks in range, visiting every occupied one is cheaper
+            if ((long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > cells.size()) {
+                for (int slot = 0; slot < cells.capacity(); slot++) {
+                    PlayerCell cell = cells.valueAt(slot);
+                    if (cell != null && cell.anyWithin(x, y, z, distanceSquared)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    PlayerCell cell = cells.get(NPCSpatialIndex.chunkKey(chunkX, chunkZ));
+                    if (cell != null && cell.anyWithin(x, y, z, distanceSquared)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void clear() {
+            cells.clear();
+        }
+    }
+
+    /**
+     * Packed x, y, z positions of the players in one chunk
+     */
+    private static final class PlayerCell {
+        private double[] positions = new double[6];
+        private int size;
+
+        private void add(double x, double y, double z) {
+            if (size + 3 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[size++] = x;
+            positions[size++] = y;
+            positions[size++] = z;
+        }
+
+        private boolean anyWithin(double x, double y, double z, double distanceSquared) {
+            for (int i = 0; i < size; i += 3) {
+                double dx = positions[i] - x;
+                double dy = positions[i + 1] - y;
+                double dz = positions[i + 2] - z;
+                if (dx * dx + dy * dy + dz * dz <= distanceSquared) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record PlayerSample(UUID worldId, double x, double y, double z, long phase) {
+    }
+}
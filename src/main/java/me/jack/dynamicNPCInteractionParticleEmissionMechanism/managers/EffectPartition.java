@@ -0,0 +1,119 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.EffectEngine;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.EmissionSlicer;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleBudget;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.SectionDensityCap;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ViewerResolver;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.display.DisplayRenderer;
+
+/**
+ * The effects of one area, with their own engine, display renderer and budget. On Folia each
+ * partition covers one region section, so the region that owns the section steps it and
+ * partitions in different regions step in parallel. On Paper a single partition covers every world.
+ * Everything except the task handle must only be touched by the thread that owns the area.
+ */
+public class EffectPartition {
+    private final ViewerResolver viewerResolver;
+    private final ParticleBudget particleBudget;
+    private final EmissionSlicer emissionSlicer;
+    private final SectionDensityCap sectionCap;
+    private final EffectEngine engine;
+    private final DisplayRenderer displayRenderer;
+    private volatile ScheduledTask task;
+    private long settingsVersion;
+    private int idleTicks;
+
+    public EffectPartition(ViewerResolver viewerResolver, ParticleBudget particleBudget, EmissionSlicer emissionSlicer,
+                           SectionDensityCap sectionCap, EffectEngine engine, DisplayRenderer displayRenderer,
+                           long settingsVersion) {
+        this.viewerResolver = viewerResolver;
+        this.particleBudget = particleBudget;
+        this.emissionSlicer = emissionSlicer;
+        this.sectionCap = sectionCap;
+        this.engine = engine;
+        this.displayRenderer = displayRenderer;
+        this.settingsVersion = settingsVersion;
+    }
+
+    /**
+     * Start drawing an effect, with display entities if requested and possible, otherwise particles
+     */
+    public void add(ActiveEffect effect, boolean display) {
+        idleTicks = 0;
+        if (display && displayRenderer.add(effect)) {
+            return;
+        }
+        engine.add(effect);
+    }
+
+    /**
+     * Step every effect in the partition by one tick
+     *
+     * @return the number of consecutive ticks the partition has had no effects
+     */
+    public int tick(double mspt) {
+        engine.step(mspt);
+        displayRenderer.tick();
+        if (engine.getActiveCount() > 0 || displayRenderer.getEffectCount() > 0) {
+            idleTicks = 0;
+        } else {
+            idleTicks++;
+        }
+        return idleTicks;
+    }
+
+    /**
+     * Stop the partition's task and drop its effects and displays
+     */
+    public void shutdown() {
+        ScheduledTask current = task;
+        if (current != null) {
+            current.cancel();
+            task = null;
+        }
+        engine.shutdown();
+        displayRenderer.shutdown();
+    }
+
+    public void setTask(ScheduledTask task) {
+        this.task = task;
+    }
+
+    /**
+     * Version of the plugin settings the partition's components were last configured with
+     */
+    public long getSettingsVersion() {
+        return settingsVersion;
+    }
+
+    public void setSettingsVersion(long settingsVersion) {
+        this.settingsVersion = settingsVersion;
+    }
+
+    public ViewerResolver getViewerResolver() {
+        return viewerResolver;
+    }
+
+    public ParticleBudget getParticleBudget() {
+        return particleBudget;
+    }
+
+    public EmissionSlicer getEmissionSlicer() {
+        return emissionSlicer;
+    }
+
+    public SectionDensityCap getSectionCap() {
+        return sectionCap;
+    }
+
+    public EffectEngine getEngine() {
+        return engine;
+    }
+
+    public DisplayRenderer getDisplayRenderer() {
+        return displayRenderer;
+    }
+}
@@ -1,35 +1,521 @@
 package me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.DatabaseManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.RegistrySnapshot;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.database.WriteBehindQueue;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.PlatformScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * The NPC registry. By default every NPC is streamed in at startup and becomes usable batch by
+ * batch, before the whole table has been read, or read from the registry snapshot when the
+ * database has not changed since it was written. With lazy loading, only the NPCs
+ * of loaded chunks are kept in memory: chunk loads are queued and fetched in batches, and a
+ * chunk's NPCs are dropped again when it unloads. Clicks that arrive before a chunk's NPCs do
+ * are served by {@link #resolveNPC(Entity)}.
+ */
 public class NPCManager {
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = 5_000_000_000L;
+    private static final long SNAPSHOT_REVISION_TIMEOUT_SECONDS = 5;
+
     private final JavaPlugin plugin;
     private final DatabaseManager databaseManager;
-    private final Map<UUID, NPCData> npcCache;
+    private final ConfigManager configManager;
+    private final PlatformScheduler scheduler;
+    private final boolean lazy;
+    private final Path snapshotFile;
+    // A ConcurrentHashMap, so compute() is atomic per NPC; the spatial index is updated inside it
+    private final ConcurrentHashMap<UUID, NPCData> npcCache;
+    private final NPCSpatialIndex spatialIndex = new NPCSpatialIndex();
+    private final AtomicLong revision = new AtomicLong();
+    private final List<Consumer<UUID>> changeListeners = new CopyOnWriteArrayList<>();
+    // Lazy loading: one entry per loaded chunk, completed once the chunk's NPCs are cached
+    private final Map<ChunkKey, CompletableFuture<Void>> chunkLoads = new ConcurrentHashMap<>();
+    private final Queue<ChunkKey> pendingChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong lazyLoadedNPCs = new AtomicLong();
+    private final AtomicLong evictedNPCs = new AtomicLong();
+    private ScheduledTask batchTask;
+    // Progress of the current or last full load
+    private final AtomicLong loadedRows = new AtomicLong();
+    private volatile long totalRows;
+    private volatile long loadStartNanos;
+    private volatile long loadEndNanos;
+    private long lastProgressLogNanos;
+    private volatile boolean registryComplete;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    private record ChunkKey(UUID worldId, int x, int z) {
+    }
 
-    public NPCManager(JavaPlugin plugin, DatabaseManager databaseManager) {
+    public NPCManager(JavaPlugin plugin, DatabaseManager databaseManager, ConfigManager configManager) {
         this.plugin = plugin;
         this.databaseManager = databaseManager;
+        this.configManager = configManager;
+        this.scheduler = new PlatformScheduler(plugin);
+        this.lazy = configManager.isLazyLoadingEnabled();
+        this.snapshotFile = plugin.getDataFolder().toPath().resolve("registry.snapshot");
         this.npcCache = new ConcurrentHashMap<>();
     }
 
     /**
-     * Load all NPCs from database into memory cache
+     * Load NPCs from database into memory cache: all of them, or with lazy loading only those in
+     * chunks that are currently loaded
      */
     public CompletableFuture<Void> loadAllNPCs() {
-        return databaseManager.getAllNPCs().thenAccept(npcs -> {
-            npcCache.clear();
-            for (NPCData npc : npcs) {
-                npcCache.put(npc.getNpcUuid(), npc);
+        if (lazy) {
+            return loadLoadedChunks();
+        }
+        if (!configManager.isRegistrySnapshotEnabled()) {
+            return streamAllNPCs();
+        }
+
+        return databaseManager.getRegistryRevision().thenCompose(registryRevision ->
+                registryRevision >= 0 && loadSnapshot(registryRevision)
+                        ? CompletableFuture.completedFuture(null)
+                        : streamAllNPCs());
+    }
+
+    /**
+     * Fill the registry from the snapshot file if it was written at the given registry revision
+     *
+     * @return false if the snapshot is missing, stale or unusable
+     */
+    private boolean loadSnapshot(long registryRevision) {
+        Map<UUID, NPCData> previous = new HashMap<>(npcCache);
+        long startNanos = System.nanoTime();
+        int count;
+        try {
+            count = RegistrySnapshot.load(snapshotFile, registryRevision, this::cacheNPC);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to read registry snapshot: " + e.getMessage());
+            return false;
+        }
+        if (count < 0) {
+            return false;
+        }
+
+        dropStale(previous);
+        long endNanos = System.nanoTime();
+        loadedRows.set(count);
+        totalRows = count;
+        loadStartNanos = startNanos;
+        loadEndNanos = endNanos;
+        registryComplete = true;
+        plugin.getLogger().info("Loaded " + count + " NPCs from registry snapshot in "
+                + String.format("%.1f", (endNanos - startNanos) / 1_000_000.0) + " ms");
+        return true;
+    }
+
+    private CompletableFuture<Void> streamAllNPCs() {
+        // NPCs from the previous load stay usable until this load has replaced or dropped them
+        Map<UUID, NPCData> previous = new HashMap<>(npcCache);
+        long startNanos = System.nanoTime();
+        loadedRows.set(0);
+        registryComplete = false;
+        loadStartNanos = startNanos;
+        loadEndNanos = 0;
+        lastProgressLogNanos = startNanos;
+
+        return databaseManager.countNPCs().thenCompose(total -> {
+            totalRows = total;
+            return databaseManager.streamAllNPCs(configManager.getLoadBatchSize(), batch -> {
+                for (NPCData npc : batch) {
+                    cacheNPC(npc);
+                }
+                revision.incrementAndGet();
+                long rows = loadedRows.addAndGet(batch.size());
+
+                long now = System.nanoTime();
+                if (now - lastProgressLogNanos >= PROGRESS_LOG_INTERVAL_NANOS) {
+                    lastProgressLogNanos = now;
+                    plugin.getLogger().info("Loading NPCs: " + rows + "/" + total + " ("
+                            + String.format("%.0f", getLoadRate()) + " NPCs/s)");
+                }
+            });
+        }).thenAccept(count -> {
+            // Rows of missing worlds were skipped, so this registry must not be snapshotted
+            registryComplete = count >= totalRows;
+            if (registryComplete) {
+                dropStale(previous);
+            } else if (!previous.isEmpty()) {
+                // Only a load that saw every row may evict; the missing rows may still exist
+                plugin.getLogger().warning("Read " + count + " of " + totalRows
+                        + " NPCs; keeping NPCs of the previous load that were not read again");
+            }
+            loadEndNanos = System.nanoTime();
+            plugin.getLogger().info("Loaded " + count + " NPCs from database in "
+                    + (loadEndNanos - startNanos) / 1_000_000 + " ms (" + String.format("%.0f", getLoadRate()) + " NPCs/s)");
+        }).whenComplete((ignored, throwable) -> {
+            if (loadEndNanos == 0) {
+                loadEndNanos = System.nanoTime();
+            }
+            if (throwable != null) {
+                plugin.getLogger().severe("NPC load failed after " + loadedRows.get()
+                        + " NPCs; NPCs of the previous load were kept");
+            }
+        });
+    }
+
+    /**
+     * Drop the entries of a previous load that the new load did not replace
+     */
+    private void dropStale(Map<UUID, NPCData> previous) {
+        for (Map.Entry<UUID, NPCData> entry : previous.entrySet()) {
+            uncacheNPC(entry.getKey(), entry.getValue());
+        }
+        revision.incrementAndGet();
+    }
+
+    /**
+     * Put an NPC in the cache and the spatial index. The index is updated inside the map's
+     * per-key compute, so concurrent writers of one NPC (loader, write-behind thread, chunk
+     * loads) can never leave the index out of step with the cache.
+     */
+    private void cacheNPC(NPCData npcData) {
+        npcCache.compute(npcData.getNpcUuid(), (uuid, previous) -> {
+            if (previous != null) {
+                spatialIndex.remove(previous);
+            }
+            spatialIndex.add(npcData);
+            return npcData;
+        });
+        changed(npcData.getNpcUuid());
+    }
+
+    /**
+     * Put an NPC in the cache and the spatial index unless it is already cached
+     *
+     * @return whether it was added
+     */
+    private boolean cacheIfAbsent(NPCData npcData) {
+        boolean[] added = new boolean[1];
+        npcCache.computeIfAbsent(npcData.getNpcUuid(), uuid -> {
+            spatialIndex.add(npcData);
+            added[0] = true;
+            return npcData;
+        });
+        if (added[0]) {
+            changed(npcData.getNpcUuid());
+        }
+        return added[0];
+    }
+
+    /**
+     * Remove an NPC from the cache and the spatial index in one step, but only if it is still the
+     * expected instance; any instance if expected is null
+     *
+     * @return the removed NPC, or null if nothing was removed
+     */
+    private NPCData uncacheNPC(UUID npcUuid, NPCData expected) {
+        NPCData[] removed = new NPCData[1];
+        npcCache.computeIfPresent(npcUuid, (uuid, current) -> {
+            if (expected != null && current != expected) {
+                return current;
+            }
+            spatialIndex.remove(current);
+            removed[0] = current;
+            return null;
+        });
+        if (removed[0] != null) {
+            changed(npcUuid);
+        }
+        return removed[0];
+    }
+
+    private void changed(UUID npcUuid) {
+        for (Consumer<UUID> listener : changeListeners) {
+            listener.accept(npcUuid);
+        }
+    }
+
+    /**
+     * Reset the lazy registry and queue every loaded chunk that holds NPCs. World and chunk state
+     * is only read on the global region, like the batch task; the database answers which chunks
+     * hold NPCs, and the loaded ones go through the same batched flush as chunk load events.
+     */
+    private CompletableFuture<Void> loadLoadedChunks() {
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        scheduler.runGlobal(() -> {
+            if (batchTask == null) {
+                long interval = configManager.getLazyLoadingBatchInterval();
+                batchTask = scheduler.runGlobalTimer(this::flushPendingChunks, interval, interval);
+            }
+
+            for (UUID npcUuid : npcCache.keySet()) {
+                uncacheNPC(npcUuid, null);
+            }
+            chunkLoads.values().forEach(load -> load.complete(null));
+            chunkLoads.clear();
+            pendingChunks.clear();
+            revision.incrementAndGet();
+
+            List<CompletableFuture<Void>> worlds = new ArrayList<>();
+            for (World world : Bukkit.getWorlds()) {
+                CompletableFuture<Void> worldLoad = new CompletableFuture<>();
+                worlds.add(worldLoad);
+                databaseManager.getNPCChunks(world.getName()).whenComplete((chunkKeys, throwable) ->
+                        scheduler.runGlobal(() -> {
+                            if (throwable != null) {
+                                worldLoad.completeExceptionally(throwable);
+                                return;
+                            }
+                            queueLoadedChunks(world, chunkKeys).whenComplete((ignored, failure) -> {
+                                if (failure != null) {
+                                    worldLoad.completeExceptionally(failure);
+                                } else {
+                                    worldLoad.complete(null);
+                                }
+                            });
+                        }));
+            }
+
+            CompletableFuture.allOf(worlds.toArray(new CompletableFuture[0])).whenComplete((ignored, throwable) -> {
+                if (throwable != null) {
+                    loaded.completeExceptionally(throwable);
+                    return;
+                }
+                plugin.getLogger().info("Loaded " + npcCache.size() + " NPCs in "
+                        + chunkLoads.size() + " loaded chunks from database");
+                loaded.complete(null);
+            });
+        });
+        return loaded;
+    }
+
+    /**
+     * Queue the loaded chunks among a world's NPC chunks and flush them as one batch; runs on
+     * the global region
+     *
+     * @return completes once every queued chunk has been fetched
+     */
+    private CompletableFuture<Void> queueLoadedChunks(World world, long[] chunkKeys) {
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (long chunkKey : chunkKeys) {
+            int chunkX = (int) chunkKey;
+            int chunkZ = (int) (chunkKey >>> 32);
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                loads.add(requestChunk(world, chunkX, chunkZ));
+            }
+        }
+        // No need to wait for the next timer tick; this is one getNPCsInChunks query per world
+        flushPendingChunks();
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Queue the NPCs of a chunk that has just loaded; does nothing unless lazy loading is enabled
+     */
+    public void onChunkLoad(World world, int chunkX, int chunkZ) {
+        if (lazy) {
+            requestChunk(world, chunkX, chunkZ);
+        }
+    }
+
+    /**
+     * Drop the NPCs of a chunk that is unloading; does nothing unless lazy loading is enabled
+     */
+    public void onChunkUnload(World world, int chunkX, int chunkZ) {
+        // The entry goes first, so database rows arriving from now on are no longer cached for it
+        CompletableFuture<Void> load = lazy ? chunkLoads.remove(new ChunkKey(world.getUID(), chunkX, chunkZ)) : null;
+        if (load == null) {
+            return;
+        }
+        // Anyone still waiting for the chunk finds nothing, as if the NPCs had not been loaded
+        load.complete(null);
+
+        List<NPCData> unloaded = new ArrayList<>();
+        spatialIndex.forEachInChunk(world, chunkX, chunkZ, unloaded::add);
+        int evicted = 0;
+        for (NPCData npcData : unloaded) {
+            if (uncacheNPC(npcData.getNpcUuid(), npcData) != null) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            evictedNPCs.addAndGet(evicted);
+            revision.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drop every NPC of a world that is unloading; does nothing unless lazy loading is enabled
+     */
+    public void onWorldUnload(World world) {
+        if (!lazy) {
+            return;
+        }
+
+        UUID worldId = world.getUID();
+        chunkLoads.entrySet().removeIf(entry -> {
+            if (!entry.getKey().worldId().equals(worldId)) {
+                return false;
+            }
+            entry.getValue().complete(null);
+            return true;
+        });
+        int evicted = 0;
+        for (NPCData npcData : npcCache.values()) {
+            if (npcData.getLocation().getWorld() == world && uncacheNPC(npcData.getNpcUuid(), npcData) != null) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            evictedNPCs.addAndGet(evicted);
+            revision.incrementAndGet();
+        }
+    }
+
+    private CompletableFuture<Void> requestChunk(World world, int chunkX, int chunkZ) {
+        ChunkKey key = new ChunkKey(world.getUID(), chunkX, chunkZ);
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        CompletableFuture<Void> existing = chunkLoads.putIfAbsent(key, load);
+        if (existing != null) {
+            return existing;
+        }
+        pendingChunks.add(key);
+        return load;
+    }
+
+    /**
+     * Fetch the NPCs of every chunk queued since the last flush, one query batch per world
+     */
+    private void flushPendingChunks() {
+        if (pendingChunks.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Map<ChunkKey, CompletableFuture<Void>>> byWorld = new HashMap<>();
+        ChunkKey key;
+        while ((key = pendingChunks.poll()) != null) {
+            // Remember which load each query answers, so rows never land in a later load of the chunk
+            CompletableFuture<Void> load = chunkLoads.get(key);
+            if (load != null) {
+                byWorld.computeIfAbsent(key.worldId(), id -> new HashMap<>()).put(key, load);
+            }
+        }
+
+        for (Map.Entry<UUID, Map<ChunkKey, CompletableFuture<Void>>> entry : byWorld.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            Map<ChunkKey, CompletableFuture<Void>> loads = entry.getValue();
+            if (world == null) {
+                loads.values().forEach(load -> load.complete(null));
+                continue;
+            }
+
+            long[] chunkKeys = new long[loads.size()];
+            int i = 0;
+            for (ChunkKey chunk : loads.keySet()) {
+                chunkKeys[i++] = NPCSpatialIndex.chunkKey(chunk.x(), chunk.z());
+            }
+            databaseManager.getNPCsInChunks(world.getName(), chunkKeys).thenAccept(npcs -> {
+                int added = 0;
+                for (NPCData npcData : npcs) {
+                    ChunkKey chunk = chunkOf(entry.getKey(), npcData);
+                    if (cacheInChunk(chunk, loads.get(chunk), npcData)) {
+                        added++;
+                    }
+                }
+                if (added > 0) {
+                    lazyLoadedNPCs.addAndGet(added);
+                    revision.incrementAndGet();
+                }
+            }).whenComplete((ignored, throwable) -> {
+                if (throwable != null) {
+                    plugin.getLogger().severe("Failed to load NPCs for " + loads.size() + " chunks: "
+                            + throwable.getMessage());
+                }
+                loads.values().forEach(load -> load.complete(null));
+            });
+        }
+    }
+
+    private static ChunkKey chunkOf(UUID worldId, NPCData npcData) {
+        Location location = npcData.getLocation();
+        return new ChunkKey(worldId, location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Cache an NPC read from the database, but only while its chunk is still tracked by the given
+     * load. The check and the insert run inside the chunk's entry, so they are atomic with
+     * {@link #onChunkUnload}, which removes the entry before evicting the chunk's NPCs: either
+     * the NPC is cached first and then evicted, or it is never cached.
+     *
+     * @return whether it was added
+     */
+    private boolean cacheInChunk(ChunkKey chunk, CompletableFuture<Void> load, NPCData npcData) {
+        if (load == null) {
+            return false;
+        }
+        boolean[] added = new boolean[1];
+        chunkLoads.computeIfPresent(chunk, (k, current) -> {
+            if (current == load) {
+                added[0] = cacheIfAbsent(npcData);
+            }
+            return current;
+        });
+        return added[0];
+    }
+
+    /**
+     * Get the NPC data of an entity, reading it through from the database when lazy loading has
+     * not cached its chunk yet. Completes with null if the entity is not a registered NPC.
+     */
+    public CompletableFuture<NPCData> resolveNPC(Entity entity) {
+        UUID npcUuid = entity.getUniqueId();
+        NPCData cached = npcCache.get(npcUuid);
+        if (cached != null || !lazy) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Location location = entity.getLocation();
+        CompletableFuture<Void> load = chunkLoads.get(
+                new ChunkKey(entity.getWorld().getUID(), location.getBlockX() >> 4, location.getBlockZ() >> 4));
+        if (load != null && load.isDone()) {
+            // The chunk's NPCs are all cached, so this entity is not one of them
+            return CompletableFuture.completedFuture(null);
+        }
+        if (load != null) {
+            return load.thenApply(ignored -> npcCache.get(npcUuid));
+        }
+
+        // A chunk loaded before startup that held no NPCs then. Track it from now on, so later
+        // clicks in it are answered from the cache, and read this entity through meanwhile.
+        requestChunk(entity.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        return databaseManager.getNPC(npcUuid).thenApply(npcData -> {
+            if (npcData != null && npcData.getLocation().getWorld() != null) {
+                ChunkKey chunk = chunkOf(npcData.getLocation().getWorld().getUID(), npcData);
+                if (cacheInChunk(chunk, chunkLoads.get(chunk), npcData)) {
+                    lazyLoadedNPCs.incrementAndGet();
+                    revision.incrementAndGet();
+                }
             }
-            plugin.getLogger().info("Loaded " + npcs.size() + " NPCs from database");
+            return npcData;
         });
     }
 
@@ -37,20 +523,65 @@ public class NPCManager {
      * Register a new NPC
      */
     public CompletableFuture<Void> registerNPC(NPCData npcData) {
-        return databaseManager.saveNPC(npcData).thenRun(() -> {
-            npcCache.put(npcData.getNpcUuid(), npcData);
-            plugin.getLogger().info("Registered NPC: " + npcData.getNpcUuid());
-        });
+        pendingWrites.incrementAndGet();
+        // The cache is updated by the commit callback rather than a thenRun, so changes to one
+        // NPC are applied in the order they were made even when the queue merges them
+        return databaseManager.saveNPC(npcData, () -> {
+            cacheNPC(npcData);
+            revision.incrementAndGet();
+        }).thenRun(() -> plugin.getLogger().info("Registered NPC: " + npcData.getNpcUuid()))
+                .whenComplete((ignored, throwable) -> pendingWrites.decrementAndGet());
     }
 
     /**
      * Unregister an NPC
      */
     public CompletableFuture<Void> unregisterNPC(UUID npcUuid) {
-        return databaseManager.removeNPC(npcUuid).thenRun(() -> {
-            npcCache.remove(npcUuid);
-            plugin.getLogger().info("Unregistered NPC: " + npcUuid);
-        });
+        pendingWrites.incrementAndGet();
+        return databaseManager.removeNPC(npcUuid, () -> {
+            uncacheNPC(npcUuid, null);
+            revision.incrementAndGet();
+        }).thenRun(() -> plugin.getLogger().info("Unregistered NPC: " + npcUuid))
+                .whenComplete((ignored, throwable) -> pendingWrites.decrementAndGet());
+    }
+
+    /**
+     * Stop the lazy loading batch task and write the registry snapshot; call before the
+     * database is closed
+     */
+    public void shutdown() {
+        if (batchTask != null) {
+            batchTask.cancel();
+            batchTask = null;
+        }
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() {
+        if (lazy || !configManager.isRegistrySnapshotEnabled()) {
+            return;
+        }
+        // The snapshot must match the database exactly, so skip it if anything may be missing
+        if (!registryComplete || isLoading() || pendingWrites.get() > 0) {
+            plugin.getLogger().info("Registry snapshot skipped: the registry is not fully loaded or has pending writes");
+            return;
+        }
+
+        try {
+            long registryRevision = databaseManager.getRegistryRevision().get(SNAPSHOT_REVISION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (registryRevision < 0) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            List<NPCData> npcs = new ArrayList<>(npcCache.values());
+            RegistrySnapshot.write(snapshotFile, registryRevision, npcs);
+            plugin.getLogger().info("Wrote registry snapshot of " + npcs.size() + " NPCs in "
+                    + String.format("%.1f", (System.nanoTime() - startNanos) / 1_000_000.0) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            plugin.getLogger().warning("Failed to write registry snapshot: " + e.getMessage());
+        }
     }
 
     /**
@@ -68,16 +599,111 @@ public class NPCManager {
     }
 
     /**
-     * Get all registered NPCs
+     * Get all registered NPCs; with lazy loading, only those in loaded chunks
      */
     public Map<UUID, NPCData> getAllNPCs() {
         return new ConcurrentHashMap<>(npcCache);
     }
 
+    /**
+     * Be told the UUID of every NPC that is cached, replaced or evicted. Listeners run on whichever
+     * thread made the change, often a database thread, so they should only record it.
+     */
+    public void addChangeListener(Consumer<UUID> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Registered NPCs indexed by world and chunk for proximity queries
+     */
+    public NPCSpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
     /**
      * Get the number of registered NPCs
      */
     public int getCount() {
         return npcCache.size();
     }
+
+    /**
+     * Counter bumped whenever the set of registered NPCs changes, so indexes built from
+     * getAllNPCs() can tell when they are stale
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+
+    /**
+     * Whether a full load is still reading NPCs
+     */
+    public boolean isLoading() {
+        return loadStartNanos != 0 && loadEndNanos == 0;
+    }
+
+    /**
+     * Get the number of NPCs read so far by the current or last full load
+     */
+    public long getLoadedRows() {
+        return loadedRows.get();
+    }
+
+    /**
+     * Get the number of NPCs the current or last full load expected to read
+     */
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * Get the NPCs read per second by the current or last full load
+     */
+    public double getLoadRate() {
+        long start = loadStartNanos;
+        if (start == 0) {
+            return 0.0;
+        }
+        long end = loadEndNanos != 0 ? loadEndNanos : System.nanoTime();
+        return loadedRows.get() * 1_000_000_000.0 / Math.max(1, end - start);
+    }
+
+    /**
+     * Get the queue that batches this registry's database writes
+     */
+    public WriteBehindQueue getWriteQueue() {
+        return databaseManager.getWriteQueue();
+    }
+
+    public boolean isLazyLoading() {
+        return lazy;
+    }
+
+    /**
+     * Get the number of loaded chunks tracked by lazy loading
+     */
+    public int getTrackedChunkCount() {
+        return chunkLoads.size();
+    }
+
+    /**
+     * Get the number of chunks waiting for their NPCs to be queried
+     */
+    public int getPendingChunkCount() {
+        return pendingChunks.size();
+    }
+
+    /**
+     * Get the number of NPCs loaded with their chunk
+     */
+    public long getLazyLoadedCount() {
+        return lazyLoadedNPCs.get();
+    }
+
+    /**
+     * Get the number of NPCs dropped because their chunk or world unloaded
+     */
+    public long getEvictedCount() {
+        return evictedNPCs.get();
+    }
 }
@@ -0,0 +1,307 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.LongObjectHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Registered NPCs bucketed by world and chunk, so proximity questions only look at the chunks a
+ * query touches instead of every NPC. Queries hand matches to a visitor and allocate nothing;
+ * the visitor runs under the index's read lock, so it may query again but must not register or
+ * unregister NPCs.
+ * Safe to update from database callback threads while the main thread queries.
+ */
+public class NPCSpatialIndex {
+    private final Map<UUID, LongObjectHashMap<Cell>> worlds = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    /**
+     * Add an NPC at its stored location; NPCs without a loaded world are not indexed
+     */
+    public void add(NPCData npcData) {
+        Location location = npcData.getLocation();
+        World world = location.getWorld();
+        if (world == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            LongObjectHashMap<Cell> cells = worlds.computeIfAbsent(world.getUID(), uid -> new LongObjectHashMap<>(64));
+            long key = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cell();
+                cells.put(key, cell);
+            }
+            cell.add(npcData, location.getX(), location.getY(), location.getZ());
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an NPC that was added with the same data and location
+     */
+    public void remove(NPCData npcData) {
+        Location location = npcData.getLocation();
+        World world = location.getWorld();
+        if (world == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            LongObjectHashMap<Cell> cells = worlds.get(world.getUID());
+            if (cells == null) {
+                return;
+            }
+            long key = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            Cell cell = cells.get(key);
+            if (cell != null && cell.remove(npcData.getNpcUuid())) {
+                size--;
+                if (cell.size == 0) {
+                    cells.remove(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            worlds.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visit every NPC within radius blocks of the point
+     *
+     * @return the number of NPCs visited
+     */
+    public int forEachInRadius(World world, double x, double y, double z, double radius, Consumer<NPCData> visitor) {
+        double radiusSquared = radius * radius;
+        lock.readLock().lock();
+        try {
+            LongObjectHashMap<Cell> cells = worlds.get(world.getUID());
+            if (cells == null) {
+                return 0;
+            }
+
+            int minChunkX = (int) Math.floor(x - radius) >> 4;
+            int maxChunkX = (int) Math.floor(x + radius) >> 4;
+            int minChunkZ = (int) Math.floor(z - radius) >> 4;
+            int maxChunkZ = (int) Math.floor(z + radius) >> 4;
+            int visited = 0;
+            if (spansMoreThan(minChunkX, maxChunkX, minChunkZ, maxChunkZ, cells.size())) {
+                for (int slot = 0; slot < cells.capacity(); slot++) {
+                    Cell cell = cells.valueAt(slot);
+                    if (cell != null) {
+                        visited += cell.visitRadius(x, y, z, radiusSquared, visitor);
+                    }
+                }
+                return visited;
+            }
+
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Cell cell = cells.get(chunkKey(chunkX, chunkZ));
+                    if (cell != null) {
+                        visited += cell.visitRadius(x, y, z, radiusSquared, visitor);
+                    }
+                }
+            }
+            return visited;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit every NPC inside the axis-aligned box, bounds inclusive
+     *
+     * @return the number of NPCs visited
+     */
+    public int forEachInBox(World world, double minX, double minY, double minZ,
+                            double maxX, double maxY, double maxZ, Consumer<NPCData> visitor) {
+        lock.readLock().lock();
+        try {
+            LongObjectHashMap<Cell> cells = worlds.get(world.getUID());
+            if (cells == null) {
+                return 0;
+            }
+
+            int minChunkX = (int) Math.floor(minX) >> 4;
+            int maxChunkX = (int) Math.floor(maxX) >> 4;
+            int minChunkZ = (int) Math.floor(minZ) >> 4;
+            int maxChunkZ = (int) Math.floor(maxZ) >> 4;
+            int visited = 0;
+            if (spansMoreThan(minChunkX, maxChunkX, minChunkZ, maxChunkZ, cells.size())) {
+                for (int slot = 0; slot < cells.capacity(); slot++) {
+                    Cell cell = cells.valueAt(slot);
+                    if (cell != null) {
+                        visited += cell.visitBox(minX, minY, minZ, maxX, maxY, maxZ, visitor);
+                    }
+                }
+                return visited;
+            }
+
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Cell cell = cells.get(chunkKey(chunkX, chunkZ));
+                    if (cell != null) {
+                        visited += cell.visitBox(minX, minY, minZ, maxX, maxY, maxZ, visitor);
+                    }
+                }
+            }
+            return visited;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit every NPC stored in one chunk
+     *
+     * @return the number of NPCs visited
+     */
+    public int forEachInChunk(World world, int chunkX, int chunkZ, Consumer<NPCData> visitor) {
+        lock.readLock().lock();
+        try {
+            LongObjectHashMap<Cell> cells = worlds.get(world.getUID());
+            Cell cell = cells != null ? cells.get(chunkKey(chunkX, chunkZ)) : null;
+            if (cell == null) {
+                return 0;
+            }
+            for (int i = 0; i < cell.size; i++) {
+                visitor.accept(cell.npcs[i]);
+            }
+            return cell.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of indexed NPCs
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of chunks holding at least one NPC, across all worlds
+     */
+    public int getChunkCount() {
+        lock.readLock().lock();
+        try {
+            int chunks = 0;
+            for (LongObjectHashMap<Cell> cells : worlds.values()) {
+                chunks += cells.size();
+            }
+            return chunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Key for a chunk's coordinates, laid out like Paper's Chunk#getChunkKey
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xffffffffL) | ((chunkZ & 0xffffffffL) << 32);
+    }
+
+    /**
+     * Whether a query's chunk range covers more chunks than there are occupied cells, in which
+     * case walking the cells beats probing every chunk in the range
+     */
+    private static boolean spansMoreThan(int minChunkX, int maxChunkX, int minChunkZ, int maxChunkZ, int cellCount) {
+        long chunks = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+        return chunks > cellCount;
+    }
+
+    /**
+     * NPCs in one chunk, with their coordinates unpacked so queries never touch Location objects
+     */
+    private static final class Cell {
+        private NPCData[] npcs = new NPCData[2];
+        private double[] coords = new double[6];
+        private int size;
+
+        private void add(NPCData npcData, double x, double y, double z) {
+            if (size == npcs.length) {
+                npcs = Arrays.copyOf(npcs, size * 2);
+                coords = Arrays.copyOf(coords, size * 6);
+            }
+            npcs[size] = npcData;
+            coords[size * 3] = x;
+            coords[size * 3 + 1] = y;
+            coords[size * 3 + 2] = z;
+            size++;
+        }
+
+        private boolean remove(UUID npcUuid) {
+            for (int i = 0; i < size; i++) {
+                if (npcs[i].getNpcUuid().equals(npcUuid)) {
+                    int last = --size;
+                    npcs[i] = npcs[last];
+                    System.arraycopy(coords, last * 3, coords, i * 3, 3);
+                    npcs[last] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int visitRadius(double x, double y, double z, double radiusSquared, Consumer<NPCData> visitor) {
+            int visited = 0;
+            for (int i = 0; i < size; i++) {
+                double dx = coords[i * 3] - x;
+                double dy = coords[i * 3 + 1] - y;
+                double dz = coords[i * 3 + 2] - z;
+                if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                    visitor.accept(npcs[i]);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+
+        private int visitBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                             Consumer<NPCData> visitor) {
+            int visited = 0;
+            for (int i = 0; i < size; i++) {
+                double x = coords[i * 3];
+                double y = coords[i * 3 + 1];
+                double z = coords[i * 3 + 2];
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                    visitor.accept(npcs[i]);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+    }
+}
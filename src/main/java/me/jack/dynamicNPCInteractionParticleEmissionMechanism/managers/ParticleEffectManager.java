@@ -1,423 +1,644 @@
 package me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers;
 
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ActiveEffect;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.AsyncFrameGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.EffectEngine;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.EmissionSlicer;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.FrameCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.GeometryCache;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleBudget;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ParticleSink;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.SectionDensityCap;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.ViewerResolver;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.baked.BakedAnimationStore;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.display.DisplayRenderer;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.DirectionPool;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeGenerator;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.effects.shapes.ShapeRegistry;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectPolicy;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
-import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.RenderBackend;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ClickRateLimiter;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.PlatformScheduler;
 import org.bukkit.Location;
-import org.bukkit.Particle;
+import org.bukkit.World;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 public class ParticleEffectManager {
-    private final JavaPlugin plugin;
+    /**
+     * Ticks without effects after which a Folia partition stops its task and is dropped
+     */
+    private static final int PARTITION_IDLE_TICKS = 600;
+
+    private record PartitionKey(UUID worldId, int x, int z) {
+    }
 
-    public ParticleEffectManager(JavaPlugin plugin) {
+    private final JavaPlugin plugin;
+    private final ConfigManager configManager;
+    private final PlatformScheduler scheduler;
+    private final ShapeRegistry shapeRegistry;
+    private final GeometryCache geometryCache;
+    private final FrameCache frameCache;
+    private final ClickRateLimiter clickRateLimiter;
+    private final Map<UUID, List<ActiveEffect>> effectsByNpc;
+    private final ForkJoinPool generationPool;
+    private final BakedAnimationStore animationStore;
+    private final SplittableRandom effectSeeds;
+    private final Map<PartitionKey, EffectPartition> partitions = new ConcurrentHashMap<>();
+    private final EffectPartition globalPartition;
+    private final int partitionShift;
+    private final AtomicLong retiredParticlesShed = new AtomicLong();
+    private volatile long settingsVersion;
+    private volatile boolean running;
+    // Read by /dnipem stats from any thread, so not guarded by the effectsByNpc lock
+    private final AtomicLong coalescedTriggers = new AtomicLong();
+    private final AtomicLong rateLimitedClicks = new AtomicLong();
+
+    public ParticleEffectManager(JavaPlugin plugin, ConfigManager configManager) {
         this.plugin = plugin;
+        this.configManager = configManager;
+        long seed = configManager.getRandomSeed();
+        int poolSize = configManager.getDirectionPoolSize();
+        this.effectSeeds = seed != 0 ? new SplittableRandom(seed) : new SplittableRandom();
+        this.shapeRegistry = new ShapeRegistry(poolSize > 0 ? DirectionPool.create(poolSize, effectSeeds.nextLong()) : null);
+        this.geometryCache = new GeometryCache();
+        long frameCachePoints = configManager.getFrameCacheMaxPoints();
+        this.frameCache = frameCachePoints > 0 ? new FrameCache(frameCachePoints) : null;
+        this.clickRateLimiter = new ClickRateLimiter(configManager.getClickRateCapacity(),
+                configManager.getClickRateRefillPerSecond());
+        this.effectsByNpc = new HashMap<>();
+        this.scheduler = new PlatformScheduler(plugin);
+        this.generationPool = configManager.isAsyncGenerationEnabled()
+                ? AsyncFrameGenerator.createPool(configManager.getGenerationThreads())
+                : null;
+        this.partitionShift = configManager.getPartitionChunkShift();
+        // Paper ticks everything on one thread, so one partition covers every world
+        this.globalPartition = PlatformScheduler.isFolia() ? null : createPartition();
+        this.animationStore = configManager.isAnimationBakingEnabled()
+                ? new BakedAnimationStore(plugin.getLogger(), new File(plugin.getDataFolder(), "baked"),
+                        plugin.getPluginMeta().getVersion(), configManager.getBakingMaxFileBytes(),
+                        configManager.getBakingRetentionDays(), geometryCache)
+                : null;
     }
 
     /**
-     * Spawn a particle effect at the given location based on NPC data
-     */
-    public void spawnEffect(NPCData npcData, Location targetLocation) {
-        ParticleShape shape = npcData.getShape();
-
-        switch (shape) {
-            case CIRCLE:
-                spawnCircle(npcData, targetLocation);
-                break;
-            case BOX:
-                spawnBox(npcData, targetLocation);
-                break;
-            case SPHERE:
-                spawnSphere(npcData, targetLocation);
-                break;
-            case SPIRAL:
-                spawnSpiral(npcData, targetLocation);
-                break;
-            case HELIX:
-                spawnHelix(npcData, targetLocation);
-                break;
-            case WAVE:
-                spawnWave(npcData, targetLocation);
-                break;
-            case HEART:
-                spawnHeart(npcData, targetLocation);
-                break;
-            case RING:
-                spawnRing(npcData, targetLocation);
-                break;
-            case TORNADO:
-                spawnTornado(npcData, targetLocation);
-                break;
-            case EXPLOSION:
-                spawnExplosion(npcData, targetLocation);
-                break;
-            case POINT:
-                spawnPoint(npcData, targetLocation);
-                break;
-            default:
-                spawnCircle(npcData, targetLocation);
-                break;
-        }
-    }
-
-    private void spawnCircle(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
-
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+     * Start the shared tick driver that steps every active effect. On Folia each partition
+     * starts its own region task when its first effect arrives.
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
 
-                double angle = (ticks * npcData.getAnimationSpeed() * npcData.getRotations() * 2 * Math.PI) / npcData.getDuration();
-                int particles = npcData.getDensity();
+        running = true;
+        if (globalPartition != null) {
+            globalPartition.setTask(scheduler.runGlobalTimer(() -> tickPartition(null, globalPartition), 1L, 1L));
+        }
+    }
 
-                for (int i = 0; i < particles; i++) {
-                    double particleAngle = (2 * Math.PI * i / particles) + angle;
-                    double x = center.getX() + npcData.getRadius() * Math.cos(particleAngle);
-                    double z = center.getZ() + npcData.getRadius() * Math.sin(particleAngle);
-                    double y = center.getY() + 1;
+    /**
+     * Re-read rendering settings from the configuration; each partition picks them up on its next tick
+     */
+    public void reload() {
+        clickRateLimiter.configure(configManager.getClickRateCapacity(), configManager.getClickRateRefillPerSecond());
+        settingsVersion++;
+    }
 
-                    Location loc = new Location(center.getWorld(), x, y, z);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Stop the tick driver and drop all active effects
+     */
+    public void shutdown() {
+        running = false;
+        if (globalPartition != null) {
+            shutdownPartition(globalPartition);
+        }
+        for (EffectPartition partition : partitions.values()) {
+            shutdownPartition(partition);
+        }
+        partitions.clear();
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+        if (generationPool != null) {
+            generationPool.shutdownNow();
+        }
+        if (animationStore != null) {
+            animationStore.shutdown();
+        }
+        synchronized (effectsByNpc) {
+            effectsByNpc.clear();
+        }
+        geometryCache.clear();
+        if (frameCache != null) {
+            frameCache.clear();
+        }
     }
 
-    private void spawnBox(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    /**
+     * Spawn a particle effect at the given location based on NPC data.
+     * The NPC's effect policy decides what happens if it already has effects running.
+     *
+     * @return true if a new effect was started
+     */
+    public boolean spawnEffect(NPCData npcData, Location targetLocation) {
+        if (npcData.getDuration() <= 0) {
+            return false;
+        }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+        UUID npcUuid = npcData.getNpcUuid();
+        synchronized (effectsByNpc) {
+            return spawnTracked(npcData, npcUuid, targetLocation);
+        }
+    }
 
-                double size = npcData.getRadius();
-                int particlesPerEdge = npcData.getDensity() / 12;
-
-                // Draw 12 edges of a box
-                for (int i = 0; i <= particlesPerEdge; i++) {
-                    double t = (double) i / particlesPerEdge;
-
-                    // Bottom square
-                    spawnParticleAt(center, -size + 2 * size * t, 0, -size, npcData);
-                    spawnParticleAt(center, -size + 2 * size * t, 0, size, npcData);
-                    spawnParticleAt(center, -size, 0, -size + 2 * size * t, npcData);
-                    spawnParticleAt(center, size, 0, -size + 2 * size * t, npcData);
-
-                    // Top square
-                    spawnParticleAt(center, -size + 2 * size * t, npcData.getHeight(), -size, npcData);
-                    spawnParticleAt(center, -size + 2 * size * t, npcData.getHeight(), size, npcData);
-                    spawnParticleAt(center, -size, npcData.getHeight(), -size + 2 * size * t, npcData);
-                    spawnParticleAt(center, size, npcData.getHeight(), -size + 2 * size * t, npcData);
-
-                    // Vertical edges
-                    spawnParticleAt(center, -size, npcData.getHeight() * t, -size, npcData);
-                    spawnParticleAt(center, -size, npcData.getHeight() * t, size, npcData);
-                    spawnParticleAt(center, size, npcData.getHeight() * t, -size, npcData);
-                    spawnParticleAt(center, size, npcData.getHeight() * t, size, npcData);
+    private boolean spawnTracked(NPCData npcData, UUID npcUuid, Location targetLocation) {
+        List<ActiveEffect> running = effectsByNpc.get(npcUuid);
+        ActiveEffect newest = null;
+        int live = 0;
+        if (running != null) {
+            for (ActiveEffect effect : running) {
+                if (!effect.isCancelled()) {
+                    newest = effect;
+                    live++;
                 }
-
-                ticks++;
             }
-        }.runTaskTimer(plugin, 0L, 1L);
-    }
-
-    private void spawnSphere(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+        }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+        if (live > 0) {
+            EffectPolicy policy = configManager.getEffectPolicy(npcUuid);
+            switch (policy) {
+                case IGNORE:
+                    coalescedTriggers.incrementAndGet();
+                    return false;
+                case EXTEND:
+                    newest.extend();
+                    coalescedTriggers.incrementAndGet();
+                    return false;
+                case CONCURRENT:
+                    if (live >= configManager.getMaxConcurrentEffects(npcUuid)) {
+                        coalescedTriggers.incrementAndGet();
+                        return false;
+                    }
+                    break;
+                case RESTART:
+                default:
+                    for (ActiveEffect effect : running) {
+                        effect.cancel();
+                    }
+                    coalescedTriggers.addAndGet(live);
+                    break;
+            }
+        }
 
-                int particles = npcData.getDensity();
-                double phi = Math.PI * (3.0 - Math.sqrt(5.0)); // golden angle
+        ActiveEffect effect = startEffect(npcData, targetLocation, false, 0);
+        track(npcUuid, running, effect);
+        return true;
+    }
 
-                for (int i = 0; i < particles; i++) {
-                    double y = 1 - (i / (double) (particles - 1)) * 2;
-                    double radiusAtY = Math.sqrt(1 - y * y);
-                    double theta = phi * i;
+    /**
+     * Start an ambient effect that loops until cancelled. Ambient effects are not subject to the
+     * NPC's click policy and run alongside any clicked effects.
+     *
+     * @param animationTick ticks since a shared start; wrapped to the animation cycle so resumed
+     *                      loops stay in phase
+     * @return the running effect, or null if the NPC has no animation to loop
+     */
+    public ActiveEffect startAmbientEffect(NPCData npcData, Location location, long animationTick) {
+        if (npcData.getDuration() <= 0) {
+            return null;
+        }
+        return startEffect(npcData, location, true, animationTick);
+    }
 
-                    double x = Math.cos(theta) * radiusAtY;
-                    double z = Math.sin(theta) * radiusAtY;
+    /**
+     * Create an effect on the calling thread and hand it to the partition that owns its location,
+     * which draws it with display entities if the NPC asks for them and its shape allows it
+     *
+     * @param loop whether the effect loops until cancelled instead of playing once
+     * @param loopTick tick a looping effect starts at, wrapped to its animation cycle
+     */
+    private ActiveEffect startEffect(NPCData npcData, Location location, boolean loop, long loopTick) {
+        ActiveEffect effect = null;
+        boolean display = false;
+        if (configManager.getRenderBackend(npcData.getNpcUuid()) == RenderBackend.DISPLAY) {
+            ShapeGenerator generator = resolveGenerator(npcData, false);
+            effect = new ActiveEffect(npcData, location, generator,
+                    geometryCache.get(generator, npcData), nextRandom(), null);
+            // Shapes the renderer cannot draw fall back to particles
+            display = DisplayRenderer.supports(effect);
+        }
 
-                    Location loc = new Location(
-                            center.getWorld(),
-                            center.getX() + x * npcData.getRadius(),
-                            center.getY() + 1 + y * npcData.getRadius(),
-                            center.getZ() + z * npcData.getRadius()
-                    );
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+        if (!display) {
+            ShapeGenerator generator = resolveGenerator(npcData, true);
+            effect = new ActiveEffect(npcData, location, generator,
+                    geometryCache.get(generator, npcData), nextRandom(),
+                    frameCache != null ? frameCache.profile(generator, npcData) : null);
+        }
+        if (loop) {
+            effect.loopFrom(loopTick);
+        }
 
-                ticks++;
+        ActiveEffect started = effect;
+        boolean useDisplay = display;
+        World world = location.getWorld();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        scheduler.runAtChunk(world, chunkX, chunkZ, () -> {
+            EffectPartition partition = partitionFor(world, chunkX, chunkZ);
+            if (partition != null) {
+                partition.add(started, useDisplay);
             }
-        }.runTaskTimer(plugin, 0L, 1L);
+        });
+        return effect;
     }
 
-    private void spawnSpiral(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
-
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
-
-                int particles = npcData.getDensity();
-                double heightStep = npcData.getHeight() / particles;
-
-                for (int i = 0; i < particles; i++) {
-                    double angle = (ticks * npcData.getAnimationSpeed() + i * npcData.getRotations() * 360.0 / particles) * Math.PI / 180.0;
-                    double radius = npcData.getRadius() * (1 - (double) i / particles);
-                    double x = center.getX() + radius * Math.cos(angle);
-                    double z = center.getZ() + radius * Math.sin(angle);
-                    double y = center.getY() + i * heightStep;
-
-                    Location loc = new Location(center.getWorld(), x, y, z);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Partition owning a chunk, created along with its region task on Folia. Must be called from
+     * the thread that owns the chunk, which is also the only thread that retires the partition.
+     */
+    private EffectPartition partitionFor(World world, int chunkX, int chunkZ) {
+        if (globalPartition != null) {
+            return globalPartition;
+        }
+        if (!running) {
+            return null;
+        }
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+        PartitionKey key = new PartitionKey(world.getUID(), chunkX >> partitionShift, chunkZ >> partitionShift);
+        EffectPartition partition = partitions.get(key);
+        if (partition == null) {
+            EffectPartition created = createPartition();
+            partition = created;
+            partitions.put(key, created);
+            created.setTask(scheduler.runRegionTimer(world, chunkX, chunkZ, () -> tickPartition(key, created), 1L, 1L));
+        }
+        return partition;
     }
 
-    private void spawnHelix(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
-
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    private EffectPartition createPartition() {
+        ViewerResolver viewerResolver = new ViewerResolver(configManager.getViewDistances(), configManager.getDensityFactors(),
+                PlatformScheduler.isFolia());
+        ParticleBudget particleBudget = new ParticleBudget(configManager.getParticleBudget(),
+                configManager.getBudgetMsptThresholds(), configManager.getBudgetFactors());
+        EmissionSlicer emissionSlicer = new EmissionSlicer(configManager.getSlicingBudgetMillis(),
+                configManager.getMaxSlices(), configManager.getSlicingMinPoints());
+        SectionDensityCap sectionCap = new SectionDensityCap(configManager.getSectionParticleCap());
+        EffectEngine engine = new EffectEngine(plugin.getLogger(), viewerResolver, particleBudget, ParticleSink.PLAYER,
+                frameCache,
+                configManager.isSlicingEnabled() ? emissionSlicer : null,
+                configManager.getSectionParticleCap() > 0 ? sectionCap : null,
+                generationPool,
+                this::untrack);
+        DisplayRenderer displayRenderer = new DisplayRenderer(plugin.getLogger(), configManager.getDisplayBlock().createBlockData(),
+                configManager.getDisplayScale(), configManager.getDisplayViewRange(),
+                configManager.getDisplayMaxEntities(), configManager.getDisplayUpdateInterval(), this::untrack);
+        return new EffectPartition(viewerResolver, particleBudget, emissionSlicer, sectionCap, engine, displayRenderer,
+                settingsVersion);
+    }
 
-                int particles = npcData.getDensity() / 2;
-                double heightStep = npcData.getHeight() / particles;
+    private void tickPartition(PartitionKey key, EffectPartition partition) {
+        if (partition.getSettingsVersion() != settingsVersion) {
+            configure(partition);
+        }
 
-                for (int i = 0; i < particles; i++) {
-                    double angle = (ticks * npcData.getAnimationSpeed() + i * 360.0 / particles) * Math.PI / 180.0;
-                    double y = center.getY() + i * heightStep;
+        int idleTicks = partition.tick(plugin.getServer().getAverageTickTime());
+        if (key != null && idleTicks >= PARTITION_IDLE_TICKS) {
+            partitions.remove(key, partition);
+            retiredParticlesShed.addAndGet(partition.getEngine().getTotalParticlesShed());
+            partition.shutdown();
+        }
+    }
 
-                    // First helix
-                    double x1 = center.getX() + npcData.getRadius() * Math.cos(angle);
-                    double z1 = center.getZ() + npcData.getRadius() * Math.sin(angle);
-                    Location loc1 = new Location(center.getWorld(), x1, y, z1);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc1, 1, 0, 0, 0, npcData.getSpeed());
+    private void configure(EffectPartition partition) {
+        partition.setSettingsVersion(settingsVersion);
+        partition.getViewerResolver().configure(configManager.getViewDistances(), configManager.getDensityFactors());
+        partition.getParticleBudget().configure(configManager.getParticleBudget(),
+                configManager.getBudgetMsptThresholds(), configManager.getBudgetFactors());
+        partition.getDisplayRenderer().configure(configManager.getDisplayBlock().createBlockData(),
+                configManager.getDisplayScale(), configManager.getDisplayViewRange(),
+                configManager.getDisplayMaxEntities(), configManager.getDisplayUpdateInterval());
+        partition.getEmissionSlicer().configure(configManager.getSlicingBudgetMillis(),
+                configManager.getMaxSlices(), configManager.getSlicingMinPoints());
+        if (configManager.getSectionParticleCap() > 0) {
+            partition.getSectionCap().configure(configManager.getSectionParticleCap());
+        }
+    }
 
-                    // Second helix (offset by 180 degrees)
-                    double x2 = center.getX() + npcData.getRadius() * Math.cos(angle + Math.PI);
-                    double z2 = center.getZ() + npcData.getRadius() * Math.sin(angle + Math.PI);
-                    Location loc2 = new Location(center.getWorld(), x2, y, z2);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc2, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    private void shutdownPartition(EffectPartition partition) {
+        try {
+            partition.shutdown();
+        } catch (RuntimeException e) {
+            // Display entities owned by another region cannot be removed from here; they are not persistent
+            plugin.getLogger().log(Level.FINE, "Could not fully shut down an effect partition", e);
+        }
+    }
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+    private Collection<EffectPartition> partitions() {
+        return globalPartition != null ? List.of(globalPartition) : partitions.values();
     }
 
-    private void spawnWave(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    private synchronized SplittableRandom nextRandom() {
+        return effectSeeds.split();
+    }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    private void track(UUID npcUuid, List<ActiveEffect> running, ActiveEffect effect) {
+        if (running == null) {
+            running = new ArrayList<>(2);
+            effectsByNpc.put(npcUuid, running);
+        }
+        running.add(effect);
+    }
 
-                int particles = npcData.getDensity();
-                double width = npcData.getRadius() * 2;
+    /**
+     * Take a click token for the player, returning false if they are clicking too fast
+     */
+    public boolean tryAcquireClick(UUID playerUuid) {
+        if (clickRateLimiter.tryAcquire(playerUuid)) {
+            return true;
+        }
+        rateLimitedClicks.incrementAndGet();
+        return false;
+    }
 
-                for (int i = 0; i < particles; i++) {
-                    double x = center.getX() - width / 2 + (width * i / particles);
-                    double waveAngle = (ticks * npcData.getAnimationSpeed() + i * npcData.getRotations() * 360.0 / particles) * Math.PI / 180.0;
-                    double y = center.getY() + 1 + Math.sin(waveAngle) * npcData.getHeight() / 2;
-                    double z = center.getZ();
+    /**
+     * Release per-player state for a player who left
+     */
+    public void forgetPlayer(UUID playerUuid) {
+        clickRateLimiter.remove(playerUuid);
+    }
 
-                    Location loc = new Location(center.getWorld(), x, y, z);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Get the number of triggers merged into, or replacing, an NPC's running effects
+     */
+    public long getCoalescedTriggers() {
+        return coalescedTriggers.get();
+    }
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+    /**
+     * Get the number of clicks rejected by the per-player rate limit
+     */
+    public long getRateLimitedClicks() {
+        return rateLimitedClicks.get();
     }
 
-    private void spawnHeart(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    /**
+     * Get the number of partitions stepping effects; always 1 on Paper
+     */
+    public int getPartitionCount() {
+        return partitions().size();
+    }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    /**
+     * Get the number of effects currently being stepped
+     */
+    public int getActiveEffectCount() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getActiveCount();
+        }
+        return count;
+    }
 
-                int particles = npcData.getDensity();
-
-                for (int i = 0; i < particles; i++) {
-                    double t = (2 * Math.PI * i / particles);
-                    
-                    // Parametric heart shape
-                    double x = 16 * Math.pow(Math.sin(t), 3);
-                    double y = 13 * Math.cos(t) - 5 * Math.cos(2 * t) - 2 * Math.cos(3 * t) - Math.cos(4 * t);
-
-                    double scale = npcData.getRadius() / 20.0;
-                    Location loc = new Location(
-                            center.getWorld(),
-                            center.getX() + x * scale,
-                            center.getY() + 1 + y * scale,
-                            center.getZ()
-                    );
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Get the number of effects drawn with display entities instead of particles
+     */
+    public int getDisplayEffectCount() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getDisplayRenderer().getEffectCount();
+        }
+        return count;
+    }
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+    /**
+     * Get the number of display entities currently spawned for effects
+     */
+    public int getDisplayEntityCount() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getDisplayRenderer().getEntityCount();
+        }
+        return count;
     }
 
-    private void spawnRing(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    /**
+     * Get the time spent stepping all effects during the last tick, summed over partitions
+     */
+    public long getLastStepNanos() {
+        long nanos = 0;
+        for (EffectPartition partition : partitions()) {
+            nanos += partition.getEngine().getLastStepNanos();
+        }
+        return nanos;
+    }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    /**
+     * Get the smoothed time spent stepping all effects per tick, summed over partitions
+     */
+    public double getAverageStepNanos() {
+        double nanos = 0;
+        for (EffectPartition partition : partitions()) {
+            nanos += partition.getEngine().getAverageStepNanos();
+        }
+        return nanos;
+    }
 
-                int particles = npcData.getDensity();
-                double y = center.getY() + npcData.getHeight();
+    /**
+     * Get the number of particles sent to players during the last tick
+     */
+    public int getLastParticlesSent() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getLastParticlesSent();
+        }
+        return count;
+    }
 
-                for (int i = 0; i < particles; i++) {
-                    double angle = 2 * Math.PI * i / particles;
-                    double x = center.getX() + npcData.getRadius() * Math.cos(angle);
-                    double z = center.getZ() + npcData.getRadius() * Math.sin(angle);
+    /**
+     * Get the number of particles dropped by the budget during the last tick
+     */
+    public int getLastParticlesShed() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getLastParticlesShed();
+        }
+        return count;
+    }
 
-                    Location loc = new Location(center.getWorld(), x, y, z);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Get the number of particles dropped by the budget since startup
+     */
+    public long getTotalParticlesShed() {
+        long count = retiredParticlesShed.get();
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getTotalParticlesShed();
+        }
+        return count;
+    }
 
-                ticks++;
+    /**
+     * Get the particle budget that is currently most degraded. On Paper this is the single global
+     * budget; on Folia every partition has its own budget with the configured size.
+     */
+    public ParticleBudget getParticleBudget() {
+        ParticleBudget worst = null;
+        for (EffectPartition partition : partitions()) {
+            ParticleBudget budget = partition.getParticleBudget();
+            if (worst == null || budget.getLevel() > worst.getLevel()) {
+                worst = budget;
             }
-        }.runTaskTimer(plugin, 0L, 1L);
+        }
+        return worst != null ? worst : new ParticleBudget(configManager.getParticleBudget(),
+                configManager.getBudgetMsptThresholds(), configManager.getBudgetFactors());
     }
 
-    private void spawnTornado(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    /**
+     * Get the number of active effects skipped last tick because nobody was near them
+     */
+    public int getLastUnviewedEffects() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getLastUnviewedEffects();
+        }
+        return count;
+    }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    /**
+     * Get the number of frames built off the main thread that were used last tick
+     */
+    public int getLastPreparedFrames() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getLastPreparedFrames();
+        }
+        return count;
+    }
 
-                int particles = npcData.getDensity();
-                double heightStep = npcData.getHeight() / particles;
+    /**
+     * Get the largest number of ticks dense effects were spread over last tick
+     */
+    public int getLastEmissionSlices() {
+        int slices = 0;
+        for (EffectPartition partition : partitions()) {
+            slices = Math.max(slices, partition.getEngine().getLastSlices());
+        }
+        return slices;
+    }
 
-                for (int i = 0; i < particles; i++) {
-                    double angle = (ticks * npcData.getAnimationSpeed() * 5 + i * npcData.getRotations() * 720.0 / particles) * Math.PI / 180.0;
-                    double radius = npcData.getRadius() * (1 - (double) i / particles);
-                    double x = center.getX() + radius * Math.cos(angle);
-                    double z = center.getZ() + radius * Math.sin(angle);
-                    double y = center.getY() + i * heightStep;
+    /**
+     * Get the number of chunk sections that hit the per-section particle cap last tick
+     */
+    public int getLastCappedSections() {
+        int count = 0;
+        for (EffectPartition partition : partitions()) {
+            count += partition.getEngine().getLastCappedSections();
+        }
+        return count;
+    }
 
-                    Location loc = new Location(center.getWorld(), x, y, z);
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Get the highest learned cost of sending one particle, in nanoseconds
+     */
+    public double getNanosPerParticle() {
+        double nanos = 0;
+        for (EffectPartition partition : partitions()) {
+            nanos = Math.max(nanos, partition.getEmissionSlicer().getNanosPerParticle());
+        }
+        return nanos;
+    }
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+    /**
+     * Get the time the tick threads waited for background frame generation last tick
+     */
+    public long getLastGenerationWaitNanos() {
+        long nanos = 0;
+        for (EffectPartition partition : partitions()) {
+            nanos += partition.getEngine().getLastGenerationWaitNanos();
+        }
+        return nanos;
     }
 
-    private void spawnExplosion(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    public boolean isAsyncGenerationEnabled() {
+        return generationPool != null;
+    }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    /**
+     * Registry of shape generators; other plugins may register custom shapes here
+     */
+    public ShapeRegistry getShapeRegistry() {
+        return shapeRegistry;
+    }
 
-                int particles = npcData.getDensity();
-                double progress = (double) ticks / npcData.getDuration();
-                double radius = npcData.getRadius() * progress;
-
-                for (int i = 0; i < particles; i++) {
-                    double theta = 2 * Math.PI * Math.random();
-                    double phi = Math.acos(2 * Math.random() - 1);
-
-                    double x = radius * Math.sin(phi) * Math.cos(theta);
-                    double y = radius * Math.sin(phi) * Math.sin(theta);
-                    double z = radius * Math.cos(phi);
-
-                    Location loc = new Location(
-                            center.getWorld(),
-                            center.getX() + x,
-                            center.getY() + 1 + y,
-                            center.getZ() + z
-                    );
-                    center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
-                }
+    /**
+     * Get the number of baked animations currently mapped for playback
+     */
+    public int getBakedAnimationCount() {
+        return animationStore != null ? animationStore.size() : 0;
+    }
 
-                ticks++;
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+    /**
+     * Get the total size of the mapped baked animations in bytes
+     */
+    public long getBakedAnimationBytes() {
+        return animationStore != null ? animationStore.getMappedBytes() : 0;
     }
 
-    private void spawnPoint(NPCData npcData, Location center) {
-        new BukkitRunnable() {
-            int ticks = 0;
+    /**
+     * Shared frame cache for deterministic profiles, or null if it is disabled
+     */
+    public FrameCache getFrameCache() {
+        return frameCache;
+    }
 
-            @Override
-            public void run() {
-                if (ticks >= npcData.getDuration()) {
-                    cancel();
-                    return;
-                }
+    /**
+     * Get the number of cached shape geometry tables
+     */
+    public int getCachedGeometryCount() {
+        return geometryCache.size();
+    }
 
-                center.getWorld().spawnParticle(
-                        npcData.getParticleType(),
-                        center,
-                        npcData.getDensity(),
-                        0.1, 0.1, 0.1,
-                        npcData.getSpeed()
-                );
+    private void untrack(ActiveEffect effect) {
+        UUID npcUuid = effect.getNpcData().getNpcUuid();
+        synchronized (effectsByNpc) {
+            List<ActiveEffect> running = effectsByNpc.get(npcUuid);
+            if (running != null && running.remove(effect) && running.isEmpty()) {
+                effectsByNpc.remove(npcUuid);
+            }
+        }
+    }
 
-                ticks++;
+    /**
+     * Pick the generator for an NPC: a per-NPC custom shape if one is configured and registered,
+     * otherwise the generator for its built-in shape.
+     *
+     * @param baked whether baked playback may replace the generator once available
+     */
+    private ShapeGenerator resolveGenerator(NPCData npcData, boolean baked) {
+        String customShape = configManager.getCustomShape(npcData.getNpcUuid());
+        if (customShape != null) {
+            ShapeGenerator generator = shapeRegistry.get(customShape);
+            if (generator != null) {
+                return baked ? withBaking(customShape.toUpperCase(Locale.ROOT), generator, npcData) : generator;
             }
-        }.runTaskTimer(plugin, 0L, 1L);
+        }
+        ShapeGenerator generator = shapeRegistry.get(npcData.getShape());
+        return baked ? withBaking(npcData.getShape().name(), generator, npcData) : generator;
     }
 
-    private void spawnParticleAt(Location center, double offsetX, double offsetY, double offsetZ, NPCData npcData) {
-        Location loc = center.clone().add(offsetX, offsetY, offsetZ);
-        center.getWorld().spawnParticle(npcData.getParticleType(), loc, 1, 0, 0, 0, npcData.getSpeed());
+    private ShapeGenerator withBaking(String shapeKey, ShapeGenerator generator, NPCData npcData) {
+        return animationStore != null ? animationStore.resolve(shapeKey, generator, npcData) : generator;
     }
 }
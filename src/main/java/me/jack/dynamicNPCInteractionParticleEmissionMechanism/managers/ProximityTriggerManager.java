@@ -0,0 +1,255 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.managers;
+
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.NPCData;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TriggerMode;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils.ConfigManager;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Fires effects when players walk into range of NPCs with a proximity trigger. A player is
+ * evaluated with one query of the NPC spatial index out to the largest exit radius, so registry
+ * changes cost nothing here: each NPC's trigger zone is resolved from the configuration the first
+ * time a query finds it and again only when its data is replaced.
+ * Players are only evaluated after crossing a block boundary, and the zones each player is inside
+ * are kept as a small sorted int array, so enter and exit are detected without per-pair objects.
+ * Moves may be handled on several region threads at once on Folia: zones are immutable and shared
+ * through a concurrent map, and each player's state is only touched by their own thread.
+ */
+public class ProximityTriggerManager {
+    private final NPCManager npcManager;
+    private final ParticleEffectManager particleEffectManager;
+    private final ConfigManager configManager;
+    private final Map<UUID, Integer> zoneIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextZoneId = new AtomicInteger();
+    private final Map<UUID, Zone> zones = new ConcurrentHashMap<>();
+    private final Map<UUID, PlayerZones> playerZones = new ConcurrentHashMap<>();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder skippedMoves = new LongAdder();
+    private final LongAdder triggers = new LongAdder();
+    // Largest exit radius of any NPC; negative until worked out from the configuration
+    private volatile double queryRadius = -1;
+
+    public ProximityTriggerManager(NPCManager npcManager, ParticleEffectManager particleEffectManager,
+                                   ConfigManager configManager) {
+        this.npcManager = npcManager;
+        this.particleEffectManager = particleEffectManager;
+        this.configManager = configManager;
+    }
+
+    /**
+     * Resolve the trigger zones with the current configuration on the next evaluation
+     */
+    public void reload() {
+        zones.clear();
+        queryRadius = -1;
+    }
+
+    /**
+     * Handle a player moving; only moves that cross a block boundary are evaluated
+     */
+    public void onMove(UUID playerUuid, Location from, Location to) {
+        if (from.getWorld() == to.getWorld() && from.getBlockX() == to.getBlockX()
+                && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) {
+            skippedMoves.increment();
+            return;
+        }
+        evaluate(playerUuid, to);
+    }
+
+    /**
+     * Forget which zones a player was inside, on quit. A world change needs nothing, since the
+     * next evaluation only finds zones in the new world.
+     */
+    public void forgetPlayer(UUID playerUuid) {
+        playerZones.remove(playerUuid);
+    }
+
+    /**
+     * Work out which zones the player is inside now and trigger the ones they just entered
+     */
+    public void evaluate(UUID playerUuid, Location location) {
+        double radius = queryRadius;
+        if (radius < 0) {
+            radius = configManager.getMaxProximityRadius() + configManager.getProximityExitMargin();
+            queryRadius = radius;
+        }
+        evaluations.increment();
+
+        PlayerZones state = playerZones.get(playerUuid);
+        World world = location.getWorld();
+        if (world == null) {
+            if (state != null) {
+                state.size = 0;
+            }
+            return;
+        }
+        if (state == null) {
+            state = new PlayerZones();
+            playerZones.put(playerUuid, state);
+        }
+
+        state.begin(location.getX(), location.getY(), location.getZ());
+        npcManager.getSpatialIndex().forEachInRadius(world, state.x, state.y, state.z, radius, state);
+        state.set(state.scratch, state.inside);
+
+        // Effects are spawned outside the index's read lock
+        for (int i = 0; i < state.enteredCount; i++) {
+            NPCData npcData = state.entered[i];
+            state.entered[i] = null;
+            triggers.increment();
+            particleEffectManager.spawnEffect(npcData, npcData.getLocation());
+        }
+    }
+
+    /**
+     * Get the trigger zone of an NPC, resolving it again if the NPC's data was replaced
+     */
+    private Zone zone(NPCData npcData) {
+        UUID npcUuid = npcData.getNpcUuid();
+        Zone zone = zones.get(npcUuid);
+        if (zone != null && zone.npcData == npcData) {
+            return zone;
+        }
+
+        // Ids stay stable across changes so players already inside a zone are not triggered again
+        int id = zoneIds.computeIfAbsent(npcUuid, uuid -> nextZoneId.getAndIncrement());
+        boolean proximity = configManager.getTriggerMode(npcUuid) != TriggerMode.CLICK;
+        double radius = configManager.getProximityRadius(npcUuid);
+        double exitRadius = radius + configManager.getProximityExitMargin();
+        Location location = npcData.getLocation();
+        zone = new Zone(id, npcData, proximity, location.getX(), location.getY(), location.getZ(),
+                radius * radius, exitRadius * exitRadius);
+        zones.put(npcUuid, zone);
+        return zone;
+    }
+
+    /**
+     * Get the number of NPCs with a proximity trigger
+     */
+    public int getZoneCount() {
+        int count = 0;
+        for (UUID npcUuid : npcManager.getAllNPCs().keySet()) {
+            if (configManager.getTriggerMode(npcUuid) != TriggerMode.CLICK) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of player positions checked against trigger zones
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Get the number of moves ignored because the player stayed within the same block
+     */
+    public long getSkippedMoves() {
+        return skippedMoves.sum();
+    }
+
+    /**
+     * Get the number of effects fired by players entering a zone
+     */
+    public long getTriggers() {
+        return triggers.sum();
+    }
+
+    private static final class Zone {
+        private final int id;
+        private final NPCData npcData;
+        private final boolean proximity;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final double enterSquared;
+        private final double exitSquared;
+
+        private Zone(int id, NPCData npcData, boolean proximity, double x, double y, double z,
+                     double enterSquared, double exitSquared) {
+            this.id = id;
+            this.npcData = npcData;
+            this.proximity = proximity;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.enterSquared = enterSquared;
+            this.exitSquared = exitSquared;
+        }
+    }
+
+    /**
+     * Sorted ids of the zones a player is currently inside, plus the buffers of the next
+     * evaluation; also the visitor that evaluation hands to the spatial index
+     */
+    private final class PlayerZones implements Consumer<NPCData> {
+        private int[] ids = new int[4];
+        private int[] scratch = new int[4];
+        private int size;
+        private int inside;
+        private NPCData[] entered = new NPCData[2];
+        private int enteredCount;
+        private double x;
+        private double y;
+        private double z;
+
+        private void begin(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            inside = 0;
+            enteredCount = 0;
+        }
+
+        @Override
+        public void accept(NPCData npcData) {
+            Zone zone = zone(npcData);
+            if (!zone.proximity) {
+                return;
+            }
+            double dx = x - zone.x;
+            double dy = y - zone.y;
+            double dz = z - zone.z;
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+            boolean wasInside = contains(zone.id);
+
+            // Leaving takes a little more distance than entering, so standing on the edge does not retrigger
+            if (distanceSquared <= zone.enterSquared || (wasInside && distanceSquared <= zone.exitSquared)) {
+                if (inside == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, inside * 2);
+                }
+                scratch[inside++] = zone.id;
+                if (!wasInside) {
+                    if (enteredCount == entered.length) {
+                        entered = Arrays.copyOf(entered, enteredCount * 2);
+                    }
+                    entered[enteredCount++] = zone.npcData;
+                }
+            }
+        }
+
+        private boolean contains(int id) {
+            return size > 0 && Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void set(int[] source, int count) {
+            if (ids.length < count) {
+                ids = new int[Math.max(count, ids.length * 2)];
+            }
+            System.arraycopy(source, 0, ids, 0, count);
+            Arrays.sort(ids, 0, count);
+            size = count;
+        }
+    }
+}
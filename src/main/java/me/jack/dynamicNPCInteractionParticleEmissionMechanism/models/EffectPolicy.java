@@ -0,0 +1,8 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.models;
+
+public enum EffectPolicy {
+    RESTART,
+    EXTEND,
+    IGNORE,
+    CONCURRENT
+}
@@ -0,0 +1,140 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.models;
+
+import org.bukkit.Particle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The effect settings of an NPC. Profiles are immutable and interned, so NPCs with the same
+ * settings share one instance and can be compared by reference. Servers tend to have many NPCs
+ * but only a handful of distinct settings, so the intern table stays small and is never pruned.
+ */
+public final class EffectProfile {
+    private static final Map<EffectProfile, EffectProfile> INTERNED = new ConcurrentHashMap<>();
+
+    private final Particle particleType;
+    private final ParticleShape shape;
+    private final TargetMode targetMode;
+    private final int density;
+    private final double speed;
+    private final int duration;
+    private final double radius;
+    private final double height;
+    private final int rotations;
+    private final double animationSpeed;
+    private final int hash;
+
+    private EffectProfile(Particle particleType, ParticleShape shape, TargetMode targetMode, int density,
+                          double speed, int duration, double radius, double height, int rotations,
+                          double animationSpeed) {
+        this.particleType = particleType;
+        this.shape = shape;
+        this.targetMode = targetMode;
+        this.density = density;
+        this.speed = speed;
+        this.duration = duration;
+        this.radius = radius;
+        this.height = height;
+        this.rotations = rotations;
+        this.animationSpeed = animationSpeed;
+
+        int h = particleType.hashCode();
+        h = 31 * h + shape.hashCode();
+        h = 31 * h + targetMode.hashCode();
+        h = 31 * h + density;
+        h = 31 * h + Double.hashCode(speed);
+        h = 31 * h + duration;
+        h = 31 * h + Double.hashCode(radius);
+        h = 31 * h + Double.hashCode(height);
+        h = 31 * h + rotations;
+        h = 31 * h + Double.hashCode(animationSpeed);
+        this.hash = h;
+    }
+
+    /**
+     * Get the shared profile with these settings, creating it on first use
+     */
+    public static EffectProfile of(Particle particleType, ParticleShape shape, TargetMode targetMode, int density,
+                                   double speed, int duration, double radius, double height, int rotations,
+                                   double animationSpeed) {
+        EffectProfile candidate = new EffectProfile(particleType, shape, targetMode, density, speed, duration,
+                radius, height, rotations, animationSpeed);
+        EffectProfile existing = INTERNED.putIfAbsent(candidate, candidate);
+        return existing != null ? existing : candidate;
+    }
+
+    /**
+     * Get the number of distinct profiles created so far
+     */
+    public static int getInternedCount() {
+        return INTERNED.size();
+    }
+
+    public Particle getParticleType() {
+        return particleType;
+    }
+
+    public ParticleShape getShape() {
+        return shape;
+    }
+
+    public TargetMode getTargetMode() {
+        return targetMode;
+    }
+
+    public int getDensity() {
+        return density;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public int getRotations() {
+        return rotations;
+    }
+
+    public double getAnimationSpeed() {
+        return animationSpeed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EffectProfile)) {
+            return false;
+        }
+        EffectProfile other = (EffectProfile) o;
+        return hash == other.hash
+                && particleType == other.particleType
+                && shape == other.shape
+                && targetMode == other.targetMode
+                && density == other.density
+                && Double.compare(speed, other.speed) == 0
+                && duration == other.duration
+                && Double.compare(radius, other.radius) == 0
+                && Double.compare(height, other.height) == 0
+                && rotations == other.rotations
+                && Double.compare(animationSpeed, other.animationSpeed) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -5,35 +5,18 @@ import org.bukkit.Particle;
 
 import java.util.UUID;
 
+/**
+ * A registered NPC: its id, where it stands and a reference to its shared {@link EffectProfile}
+ */
 public class NPCData {
     private final UUID npcUuid;
     private final Location location;
-    private final Particle particleType;
-    private final ParticleShape shape;
-    private final TargetMode targetMode;
-    private final int density;
-    private final double speed;
-    private final int duration;
-    private final double radius;
-    private final double height;
-    private final int rotations;
-    private final double animationSpeed;
-
-    public NPCData(UUID npcUuid, Location location, Particle particleType, ParticleShape shape,
-                   TargetMode targetMode, int density, double speed, int duration, double radius,
-                   double height, int rotations, double animationSpeed) {
+    private final EffectProfile profile;
+
+    public NPCData(UUID npcUuid, Location location, EffectProfile profile) {
         this.npcUuid = npcUuid;
         this.location = location;
-        this.particleType = particleType;
-        this.shape = shape;
-        this.targetMode = targetMode;
-        this.density = density;
-        this.speed = speed;
-        this.duration = duration;
-        this.radius = radius;
-        this.height = height;
-        this.rotations = rotations;
-        this.animationSpeed = animationSpeed;
+        this.profile = profile;
     }
 
     public UUID getNpcUuid() {
@@ -44,43 +27,47 @@ public class NPCData {
         return location;
     }
 
+    public EffectProfile getProfile() {
+        return profile;
+    }
+
     public Particle getParticleType() {
-        return particleType;
+        return profile.getParticleType();
     }
 
     public ParticleShape getShape() {
-        return shape;
+        return profile.getShape();
     }
 
     public TargetMode getTargetMode() {
-        return targetMode;
+        return profile.getTargetMode();
     }
 
     public int getDensity() {
-        return density;
+        return profile.getDensity();
     }
 
     public double getSpeed() {
-        return speed;
+        return profile.getSpeed();
     }
 
     public int getDuration() {
-        return duration;
+        return profile.getDuration();
     }
 
     public double getRadius() {
-        return radius;
+        return profile.getRadius();
     }
 
     public double getHeight() {
-        return height;
+        return profile.getHeight();
     }
 
     public int getRotations() {
-        return rotations;
+        return profile.getRotations();
     }
 
     public double getAnimationSpeed() {
-        return animationSpeed;
+        return profile.getAnimationSpeed();
     }
 }
@@ -0,0 +1,6 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.models;
+
+public enum RenderBackend {
+    PARTICLE,
+    DISPLAY
+}
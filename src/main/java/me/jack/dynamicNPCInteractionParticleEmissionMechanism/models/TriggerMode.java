@@ -0,0 +1,7 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.models;
+
+public enum TriggerMode {
+    CLICK,
+    PROXIMITY,
+    BOTH
+}
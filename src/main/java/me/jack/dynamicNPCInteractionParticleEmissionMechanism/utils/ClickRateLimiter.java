@@ -0,0 +1,82 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per-player token bucket.
+ * Each bucket is a single AtomicLong packing the last refill time (upper bits)
+ * and the token count in thousandths (lower 24 bits), updated with CAS.
+ */
+public class ClickRateLimiter {
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long ONE_TOKEN = 1000;
+
+    private final Map<UUID, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long epochMillis = System.currentTimeMillis();
+    private volatile long capacity;
+    private volatile double refillPerMillis;
+
+    public ClickRateLimiter(int capacity, double refillPerSecond) {
+        configure(capacity, refillPerSecond);
+    }
+
+    /**
+     * Replace the bucket size and refill rate; existing buckets keep their tokens
+     */
+    public void configure(int capacity, double refillPerSecond) {
+        this.capacity = Math.min(Math.max(1, capacity) * ONE_TOKEN, TOKEN_MASK);
+        // Thousandths of a token per millisecond equals tokens per second
+        this.refillPerMillis = Math.max(0, refillPerSecond);
+    }
+
+    /**
+     * Take one token from the player's bucket, returning false if it is empty
+     */
+    public boolean tryAcquire(UUID playerUuid) {
+        long max = capacity;
+        AtomicLong bucket = buckets.computeIfAbsent(playerUuid, uuid -> new AtomicLong(pack(now(), max)));
+
+        while (true) {
+            long state = bucket.get();
+            long now = now();
+            long last = state >>> TOKEN_BITS;
+            long tokens = state & TOKEN_MASK;
+
+            long elapsed = Math.max(0, now - last);
+            long refilled = (long) (elapsed * refillPerMillis);
+            if (refilled > 0) {
+                tokens = Math.min(max, tokens + refilled);
+            } else {
+                // Keep the old timestamp so sub-millisecond refills are not lost
+                now = last;
+            }
+
+            if (tokens < ONE_TOKEN) {
+                return false;
+            }
+
+            if (bucket.compareAndSet(state, pack(now, tokens - ONE_TOKEN))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop the bucket of a player who left
+     */
+    public void remove(UUID playerUuid) {
+        buckets.remove(playerUuid);
+    }
+
+    private long now() {
+        return System.currentTimeMillis() - epochMillis;
+    }
+
+    private static long pack(long millis, long tokens) {
+        return (millis << TOKEN_BITS) | tokens;
+    }
+}
@@ -1,12 +1,25 @@
 package me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils;
 
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.EffectPolicy;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.ParticleShape;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.RenderBackend;
+import org.bukkit.Material;
 import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TargetMode;
+import me.jack.dynamicNPCInteractionParticleEmissionMechanism.models.TriggerMode;
 import org.bukkit.Particle;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.List;
+import java.util.UUID;
+
 public class ConfigManager {
+    private static final double[] DEFAULT_VIEW_DISTANCES = {16.0, 32.0, 64.0};
+    private static final double[] DEFAULT_DENSITY_FACTORS = {1.0, 0.5, 0.25};
+    private static final double[] DEFAULT_MSPT_THRESHOLDS = {40.0, 50.0, 70.0};
+    private static final double[] DEFAULT_BUDGET_FACTORS = {0.75, 0.5, 0.25};
+
     private final JavaPlugin plugin;
     private FileConfiguration config;
 
@@ -49,6 +62,99 @@ public class ConfigManager {
         return config.getBoolean("database.mysql.useSSL", false);
     }
 
+    /**
+     * Whether SQLite uses write-ahead logging, so reads are not blocked by writes
+     */
+    public boolean isSQLiteWalEnabled() {
+        return config.getBoolean("database.sqlite.wal", true);
+    }
+
+    /**
+     * SQLite synchronous level: OFF, NORMAL or FULL
+     */
+    public String getSQLiteSynchronous() {
+        String level = config.getString("database.sqlite.synchronous", "NORMAL").toUpperCase();
+        switch (level) {
+            case "OFF":
+            case "NORMAL":
+            case "FULL":
+                return level;
+            default:
+                plugin.getLogger().warning("Invalid database.sqlite.synchronous: " + level + ", using NORMAL");
+                return "NORMAL";
+        }
+    }
+
+    /**
+     * Number of read-only SQLite connections serving queries
+     */
+    public int getSQLiteReaderConnections() {
+        return Math.max(1, config.getInt("database.sqlite.reader-connections", 2));
+    }
+
+    /**
+     * SQLite page cache per connection, in KiB
+     */
+    public int getSQLiteCacheSizeKb() {
+        return Math.max(0, config.getInt("database.sqlite.cache-size-kb", 8192));
+    }
+
+    /**
+     * Bytes of the SQLite file memory-mapped per connection, in MiB
+     */
+    public int getSQLiteMmapSizeMb() {
+        return Math.max(0, config.getInt("database.sqlite.mmap-size-mb", 64));
+    }
+
+    /**
+     * Number of NPCs read from the database before they are added to the registry
+     */
+    public int getLoadBatchSize() {
+        return Math.max(1, config.getInt("database.load-batch-size", 1000));
+    }
+
+    /**
+     * Whether the registry is saved to a snapshot file on shutdown and read back on startup
+     */
+    public boolean isRegistrySnapshotEnabled() {
+        return config.getBoolean("database.snapshot.enabled", true);
+    }
+
+    /**
+     * Whether NPC rows are loaded per chunk as chunks load instead of all at startup
+     */
+    public boolean isLazyLoadingEnabled() {
+        return config.getBoolean("database.lazy-loading.enabled", false);
+    }
+
+    /**
+     * Ticks between batched queries for the NPCs of newly loaded chunks
+     */
+    public int getLazyLoadingBatchInterval() {
+        return Math.max(1, config.getInt("database.lazy-loading.batch-interval", 2));
+    }
+
+    /**
+     * Number of queued NPC changes that triggers a batch write
+     */
+    public int getWriteBatchSize() {
+        return Math.max(1, config.getInt("database.write-behind.batch-size", 200));
+    }
+
+    /**
+     * Milliseconds a queued NPC change may wait before its batch is written
+     */
+    public long getWriteMaxDelayMillis() {
+        return Math.max(0L, config.getLong("database.write-behind.max-delay-ms", 50L));
+    }
+
+    /**
+     * Seconds shutdown waits for queued NPC changes to be written
+     */
+    public int getWriteShutdownTimeoutSeconds() {
+        return Math.max(1, config.getInt("database.write-behind.shutdown-timeout-seconds", 10));
+    }
+
     public Particle getDefaultParticleType() {
         String particleName = config.getString("default-settings.particle-type", "FLAME");
         try {
@@ -107,6 +213,327 @@ public class ConfigManager {
         return config.getDouble("default-settings.animation-speed", 1.0);
     }
 
+    /**
+     * Outer edge of each level-of-detail band, ascending; players beyond the last band see nothing
+     */
+    public double[] getViewDistances() {
+        return getAscendingList("rendering.view-distances", DEFAULT_VIEW_DISTANCES);
+    }
+
+    /**
+     * Fraction of particles sent to viewers in each band, one per view distance
+     */
+    public double[] getDensityFactors() {
+        return getMatchingList("rendering.density-factors", getViewDistances().length, DEFAULT_DENSITY_FACTORS);
+    }
+
+    public boolean isAsyncGenerationEnabled() {
+        return config.getBoolean("engine.async-generation", true);
+    }
+
+    /**
+     * Number of frame generator threads; 0 picks half the available processors
+     */
+    public int getGenerationThreads() {
+        int threads = config.getInt("engine.generation-threads", 0);
+        if (threads <= 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        return threads;
+    }
+
+    /**
+     * Seed for effect randomness; 0 means a different seed every start
+     */
+    public long getRandomSeed() {
+        return config.getLong("engine.random-seed", 0L);
+    }
+
+    /**
+     * Number of precomputed directions EXPLOSION samples from; 0 draws fresh directions per particle
+     */
+    public int getDirectionPoolSize() {
+        return Math.max(0, config.getInt("engine.direction-pool-size", 4096));
+    }
+
+    /**
+     * Whether dense effects may spread a frame's particles over several ticks
+     */
+    public boolean isSlicingEnabled() {
+        return config.getBoolean("engine.slicing.enabled", true);
+    }
+
+    /**
+     * Main-thread time per tick to aim for when sending particles, in milliseconds
+     */
+    public double getSlicingBudgetMillis() {
+        return Math.max(0.1, config.getDouble("engine.slicing.emit-budget-ms", 2.0));
+    }
+
+    public int getMaxSlices() {
+        return Math.max(1, config.getInt("engine.slicing.max-slices", 8));
+    }
+
+    /**
+     * Effects sending fewer particles than this per tick are never sliced
+     */
+    public int getSlicingMinPoints() {
+        return Math.max(1, config.getInt("engine.slicing.min-points", 512));
+    }
+
+    /**
+     * Upper bound on points held by the shared frame cache; 0 disables it
+     */
+    public long getFrameCacheMaxPoints() {
+        return Math.max(0L, config.getLong("engine.frame-cache.max-points", 262144L));
+    }
+
+    /**
+     * Whether deterministic effect profiles are baked to memory-mapped files and played back from them
+     */
+    public boolean isAnimationBakingEnabled() {
+        return config.getBoolean("engine.baking.enabled", true);
+    }
+
+    /**
+     * Largest baked animation file to write, in bytes
+     */
+    public long getBakingMaxFileBytes() {
+        return Math.max(0L, config.getLong("engine.baking.max-file-size-mb", 16L)) * 1024L * 1024L;
+    }
+
+    /**
+     * Days an unused baked animation is kept before it is deleted on startup; 0 keeps them forever
+     */
+    public int getBakingRetentionDays() {
+        return Math.max(0, config.getInt("engine.baking.retention-days", 30));
+    }
+
+    /**
+     * Size of the areas effects are partitioned into on Folia, as a power-of-two shift of chunks.
+     * Must not exceed the server's region grid exponent, so every partition lies in one region section.
+     */
+    public int getPartitionChunkShift() {
+        return Math.max(0, Math.min(8, config.getInt("engine.region-partition-shift", 4)));
+    }
+
+    public int getParticleBudget() {
+        return config.getInt("budget.particles-per-tick", 20000);
+    }
+
+    /**
+     * Particles per chunk section per tick before effects there are thinned; 0 disables the cap
+     */
+    public int getSectionParticleCap() {
+        return Math.max(0, config.getInt("budget.section-cap", 4000));
+    }
+
+    /**
+     * Server tick times (ms) at which the particle budget is reduced, ascending
+     */
+    public double[] getBudgetMsptThresholds() {
+        return getAscendingList("budget.mspt-thresholds", DEFAULT_MSPT_THRESHOLDS);
+    }
+
+    /**
+     * Budget multiplier applied once each MSPT threshold is crossed, one per threshold
+     */
+    public double[] getBudgetFactors() {
+        return getMatchingList("budget.budget-factors", getBudgetMsptThresholds().length, DEFAULT_BUDGET_FACTORS);
+    }
+
+    /**
+     * What a new trigger does while the NPC already has an effect running, honouring per-NPC overrides
+     */
+    public EffectPolicy getEffectPolicy(UUID npcUuid) {
+        String policyName = config.getString(overridePath(npcUuid, "effect-policy"),
+                config.getString("interaction.effect-policy", "RESTART"));
+        try {
+            return EffectPolicy.valueOf(policyName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid effect policy: " + policyName + ", using RESTART");
+            return EffectPolicy.RESTART;
+        }
+    }
+
+    /**
+     * Maximum simultaneous effects per NPC under the CONCURRENT policy, honouring per-NPC overrides
+     */
+    public int getMaxConcurrentEffects(UUID npcUuid) {
+        return Math.max(1, config.getInt(overridePath(npcUuid, "max-concurrent"),
+                config.getInt("interaction.max-concurrent", 3)));
+    }
+
+    /**
+     * Name of a registered custom shape to use for an NPC instead of its stored shape, or null
+     */
+    public String getCustomShape(UUID npcUuid) {
+        return config.getString(overridePath(npcUuid, "shape"));
+    }
+
+    /**
+     * How an NPC's effects are drawn, honouring per-NPC overrides
+     */
+    public RenderBackend getRenderBackend(UUID npcUuid) {
+        String backendName = config.getString(overridePath(npcUuid, "render-backend"),
+                config.getString("rendering.backend", "PARTICLE"));
+        try {
+            return RenderBackend.valueOf(backendName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid render backend: " + backendName + ", using PARTICLE");
+            return RenderBackend.PARTICLE;
+        }
+    }
+
+    /**
+     * Block shown by each display entity of the DISPLAY backend
+     */
+    public Material getDisplayBlock() {
+        String blockName = config.getString("rendering.display.block", "GLOWSTONE");
+        Material material = Material.matchMaterial(blockName);
+        if (material == null || !material.isBlock()) {
+            plugin.getLogger().warning("Invalid display block: " + blockName + ", using GLOWSTONE");
+            return Material.GLOWSTONE;
+        }
+        return material;
+    }
+
+    /**
+     * Edge length of each display block, in blocks
+     */
+    public float getDisplayScale() {
+        return (float) Math.max(0.01, config.getDouble("rendering.display.scale", 0.12));
+    }
+
+    /**
+     * Display view range multiplier; 1.0 matches the server's entity view distance
+     */
+    public float getDisplayViewRange() {
+        return (float) Math.max(0.01, config.getDouble("rendering.display.view-range", 0.5));
+    }
+
+    /**
+     * Most display entities spawned for one effect; denser shapes are sampled down
+     */
+    public int getDisplayMaxEntities() {
+        return Math.max(1, config.getInt("rendering.display.max-entities", 64));
+    }
+
+    /**
+     * Ticks between transformation updates of rotating shapes
+     */
+    public int getDisplayUpdateInterval() {
+        return Math.max(1, config.getInt("rendering.display.update-interval", 4));
+    }
+
+    public int getClickRateCapacity() {
+        return config.getInt("interaction.click-rate.capacity", 4);
+    }
+
+    public double getClickRateRefillPerSecond() {
+        return config.getDouble("interaction.click-rate.refill-per-second", 2.0);
+    }
+
+    /**
+     * What fires the NPC's effect: clicks, players walking into range, or both
+     */
+    public TriggerMode getTriggerMode(UUID npcUuid) {
+        String modeName = config.getString(overridePath(npcUuid, "trigger"),
+                config.getString("interaction.trigger", "CLICK"));
+        try {
+            return TriggerMode.valueOf(modeName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid trigger mode: " + modeName + ", using CLICK");
+            return TriggerMode.CLICK;
+        }
+    }
+
+    /**
+     * Distance in blocks at which a player walking towards the NPC triggers its effect
+     */
+    public double getProximityRadius(UUID npcUuid) {
+        return Math.max(0.5, config.getDouble(overridePath(npcUuid, "proximity-radius"),
+                config.getDouble("interaction.proximity.radius", 4.0)));
+    }
+
+    /**
+     * Largest proximity radius of any NPC, from the default and every override
+     */
+    public double getMaxProximityRadius() {
+        double radius = Math.max(0.5, config.getDouble("interaction.proximity.radius", 4.0));
+        ConfigurationSection overrides = config.getConfigurationSection("npc-overrides");
+        if (overrides != null) {
+            for (String key : overrides.getKeys(false)) {
+                radius = Math.max(radius, overrides.getDouble(key + ".proximity-radius", radius));
+            }
+        }
+        return radius;
+    }
+
+    /**
+     * Extra distance beyond the trigger radius a player must move before they count as having left
+     */
+    public double getProximityExitMargin() {
+        return Math.max(0.0, config.getDouble("interaction.proximity.exit-margin", 1.0));
+    }
+
+    /**
+     * Whether the NPC plays its effect as an idle loop while players are nearby
+     */
+    public boolean isAmbientEnabled(UUID npcUuid) {
+        return config.getBoolean(overridePath(npcUuid, "ambient"), config.getBoolean("ambient.enabled", false));
+    }
+
+    /**
+     * Distance in blocks within which a player activates ambient effects
+     */
+    public double getAmbientActivationDistance() {
+        return Math.max(1.0, config.getDouble("ambient.activation-distance", 32.0));
+    }
+
+    /**
+     * Ticks between ambient proximity checks
+     */
+    public int getAmbientCheckInterval() {
+        return Math.max(1, config.getInt("ambient.check-interval", 20));
+    }
+
+    private static String overridePath(UUID npcUuid, String key) {
+        return "npc-overrides." + npcUuid + "." + key;
+    }
+
+    private double[] getAscendingList(String path, double[] fallback) {
+        double[] values = toArray(config.getDoubleList(path), fallback);
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] <= values[i - 1]) {
+                plugin.getLogger().warning(path + " must be ascending, using defaults");
+                return fallback.clone();
+            }
+        }
+        return values;
+    }
+
+    private double[] getMatchingList(String path, int expectedLength, double[] fallback) {
+        double[] values = toArray(config.getDoubleList(path), fallback);
+        if (values.length != expectedLength) {
+            plugin.getLogger().warning(path + " must have " + expectedLength + " entries, using defaults");
+            return fallback.clone();
+        }
+        return values;
+    }
+
+    private static double[] toArray(List<Double> values, double[] fallback) {
+        if (values == null || values.isEmpty()) {
+            return fallback.clone();
+        }
+
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
     public String getMessage(String key) {
         String message = config.getString("messages." + key, "&cMessage not found: " + key);
         return message.replace("&", "§");
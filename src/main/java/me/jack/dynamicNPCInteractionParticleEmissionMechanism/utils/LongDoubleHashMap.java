@@ -0,0 +1,108 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive long keys to double values, with no boxing and no
+ * per-entry objects. Meant to be filled and cleared every tick; clearing keeps the tables.
+ * Not thread-safe.
+ */
+public final class LongDoubleHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public LongDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Add delta to the key's value, treating a missing key as 0, and return the new value
+     */
+    public double add(long key, double delta) {
+        int slot = find(key);
+        if (used[slot]) {
+            return values[slot] += delta;
+        }
+
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size > mask * LOAD_FACTOR) {
+            grow();
+        }
+        return delta;
+    }
+
+    /**
+     * Get the key's value, or 0 if it is missing
+     */
+    public double get(long key) {
+        int slot = find(key);
+        return used[slot] ? values[slot] : 0;
+    }
+
+    public boolean containsKey(long key) {
+        return used[find(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Murmur3 finalizer, so neighbouring keys spread across the table
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53a87c5L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,97 @@
+package me.jack.dynamicNPCInteractionParticleEmissionMechanism.utils;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Schedules work on the thread that owns it. Uses Paper's region, entity and global schedulers,
+ * which run everything on the main thread on Paper and on the owning region's thread on Folia,
+ * so the same code works on both. Work that is already on the owning thread runs immediately.
+ */
+public final class PlatformScheduler {
+    private static final boolean FOLIA = classExists("io.papermc.paper.threadedregions.RegionizedServer");
+
+    private final JavaPlugin plugin;
+
+    public PlatformScheduler(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Whether the server runs regions on separate threads
+     */
+    public static boolean isFolia() {
+        return FOLIA;
+    }
+
+    /**
+     * Run a task repeatedly on the global region (the main thread on Paper)
+     */
+    public ScheduledTask runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, scheduled -> task.run(),
+                Math.max(1, delayTicks), periodTicks);
+    }
+
+    /**
+     * Run a task repeatedly on whichever region owns the given chunk
+     */
+    public ScheduledTask runRegionTimer(World world, int chunkX, int chunkZ, Runnable task,
+                                        long delayTicks, long periodTicks) {
+        return Bukkit.getRegionScheduler().runAtFixedRate(plugin, world, chunkX, chunkZ, scheduled -> task.run(),
+                Math.max(1, delayTicks), periodTicks);
+    }
+
+    /**
+     * Run a task on the global region, immediately if this thread already is it
+     */
+    public void runGlobal(Runnable task) {
+        if (FOLIA ? Bukkit.isGlobalTickThread() : Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+        }
+    }
+
+    /**
+     * Run a task on the region owning a chunk, immediately if this thread already owns it
+     */
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            task.run();
+        } else {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        }
+    }
+
+    /**
+     * Run a task on the region owning a location, immediately if this thread already owns it
+     */
+    public void runAtLocation(Location location, Runnable task) {
+        runAtChunk(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, task);
+    }
+
+    /**
+     * Run a task on the thread owning an entity, immediately if this thread already owns it.
+     * The task is dropped if the entity is removed first.
+     */
+    public void runAtEntity(Entity entity, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+        } else {
+            entity.getScheduler().execute(plugin, task, null, 1L);
+        }
+    }
+
+    private static boolean classExists(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}